@@ -0,0 +1,84 @@
+package benchmarks;
+
+import hanabAI.Action;
+import hanabAI.ActionType;
+import hanabAI.Card;
+import hanabAI.CompactState;
+import hanabAI.IllegalActionException;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the State engine and deck shuffling, on a fixed mid-game position with three players.
+ * Run with the gc profiler to see the allocation rate: java -jar benchmarks/target/benchmarks.jar -prof gc
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EngineBenchmark{
+
+  private hanabAI.State state;
+  private hanabAI.State local;
+  private Stack<Card> deck;
+  private Action hint;
+  private Action discard;
+  private Action play;
+  private int player;
+  private final int[] moves = new int[CompactState.MAX_MOVES];
+
+  @Setup
+  public void setup() throws IllegalActionException{
+    deck = Card.shuffledDeck(Fixtures.SEED);
+    state = Fixtures.midGame(3, 12, deck);
+    player = state.getNextPlayer();
+    local = state.hideHand(player);
+    hint = Fixtures.hint(state, deck);
+    discard = new Action(player, state.getName(player), ActionType.DISCARD, 0);
+    play = new Action(player, state.getName(player), ActionType.PLAY, 0);
+  }
+
+  @Benchmark
+  public hanabAI.State nextStateHint() throws IllegalActionException{
+    return state.nextState(hint);
+  }
+
+  @Benchmark
+  public hanabAI.State nextStateDiscard() throws IllegalActionException{
+    //the state draws from its own deck without changing it, so every invocation draws the same card
+    return state.nextState(discard);
+  }
+
+  @Benchmark
+  public Object cloneState(){
+    return state.clone();
+  }
+
+  @Benchmark
+  public hanabAI.State hideHand() throws IllegalActionException{
+    return state.hideHand(player);
+  }
+
+  @Benchmark
+  public boolean legalActionHint() throws IllegalActionException{
+    return local.legalAction(hint);
+  }
+
+  @Benchmark
+  public boolean legalActionPlay() throws IllegalActionException{
+    return local.legalAction(play);
+  }
+
+  @Benchmark
+  public int legalMoves() throws IllegalActionException{
+    return local.legalMoves(moves);
+  }
+
+  @Benchmark
+  public Stack<Card> shuffledDeck(){
+    return Card.shuffledDeck();
+  }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import hanabAI.*;
+import java.util.Stack;
+
+/**
+ * Deterministic game positions for the benchmarks.
+ * Positions are reached from a seeded deck by a fixed sequence of legal moves, 
+ * so every run measures the same states.
+ **/
+final class Fixtures{
+
+  /**The seed of the deck used by every benchmark**/
+  static final long SEED = 3001;
+
+  private Fixtures(){}
+
+  /**
+   * Plays a fixed sequence of hints and discards from a seeded deal.
+   * @param players the number of players
+   * @param moves the number of moves to make
+   * @param deck the deck of the game, which is left holding the undrawn cards
+   * @return the global state after the moves
+   **/
+  static State midGame(int players, int moves, Stack<Card> deck) throws IllegalActionException{
+    String[] names = new String[players];
+    for(int i = 0; i<players; i++) names[i] = "Player"+i;
+    State s = new State(names, deck);
+    int[] legal = new int[CompactState.MAX_MOVES];
+    for(int i = 0; i<moves && !s.gameOver(); i++){
+      CompactState c = CompactState.fromState(s, deck);
+      int n = c.legalMoves(legal);
+      //alternate hints and discards, keeping about half the hint tokens, so the game does not end early
+      int move = c.getHintTokens()>4?legal[n-1-(i%3)]:Move.discard(c.getNextPlayer(), i%c.getHandSize());
+      int hintee = Move.isHint(move)?Move.hintee(move):Move.player(move);
+      s = s.nextState(Move.toAction(move, s.getName(Move.player(move)), s.getHand(hintee).length), deck);
+    }
+    return s;
+  }
+
+  /**
+   * Finds a legal hint for the next player.
+   * @param s a global state with at least one hint token
+   * @param deck the deck of the game
+   * @return a hint action
+   **/
+  static Action hint(State s, Stack<Card> deck) throws IllegalActionException{
+    CompactState c = CompactState.fromState(s, deck);
+    int[] legal = new int[CompactState.MAX_MOVES];
+    int n = c.legalMoves(legal);
+    for(int i = n-1; i>=0; i--){
+      if(Move.isHint(legal[i]))
+        return Move.toAction(legal[i], s.getName(Move.player(legal[i])), s.getHand(Move.hintee(legal[i])).length);
+    }
+    throw new IllegalActionException("No hint available");
+  }
+}
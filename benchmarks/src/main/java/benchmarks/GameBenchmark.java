@@ -0,0 +1,72 @@
+package benchmarks;
+
+import agents.BasicAgent;
+import hanabAI.Action;
+import hanabAI.Agent;
+import hanabAI.Card;
+import hanabAI.CompactState;
+import hanabAI.Hanabi;
+import hanabAI.IllegalActionException;
+import hanabAI.RolloutPolicy;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of complete games and agent decisions, and of the same games played out by RolloutPolicy.
+ * Games are dealt from a fixed seed, but the basic agents make random choices,
+ * so the length of each game varies: enough iterations are measured for the mean to be stable.
+ * Run with the gc profiler to see the allocation rate: java -jar benchmarks/target/benchmarks.jar -prof gc
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class GameBenchmark{
+
+  @Param({"3", "5"})
+  public int players;
+
+  private Stack<Card> deck;
+  private hanabAI.State local;
+  private BasicAgent agent;
+  private CompactState start;
+  private CompactState rollout;
+  private final RolloutPolicy policy = new RolloutPolicy();
+  private final SplittableRandom random = new SplittableRandom(Fixtures.SEED);
+
+  @Setup
+  public void setup() throws IllegalActionException{
+    deck = Card.shuffledDeck(Fixtures.SEED);
+    Stack<Card> d = Card.shuffledDeck(Fixtures.SEED);
+    hanabAI.State s = Fixtures.midGame(players, 12, d);
+    local = s.hideHand(s.getNextPlayer());
+    agent = new BasicAgent();
+    String[] names = new String[players];
+    for(int i = 0; i<players; i++) names[i] = "Player "+i;
+    start = new CompactState(names, Card.shuffledOrder(Fixtures.SEED));
+    rollout = start.copy();
+  }
+
+  @Benchmark
+  public int playGame(){
+    Agent[] agents = new Agent[players];
+    for(int i = 0; i<players; i++) agents[i] = new BasicAgent();
+    return new Hanabi(agents, deck).play();
+  }
+
+  @Benchmark
+  public Action basicAgentDoAction(){
+    return agent.doAction(local);
+  }
+
+  @Benchmark
+  public int policyRollout(){
+    rollout.copyFrom(start);
+    policy.reset(rollout);
+    return policy.rollout(rollout, random);
+  }
+}
@@ -11,6 +11,7 @@ import hanabAI.*;
  *   with probability 0.4 give a colour hint to the next player with a required card,
  *   with probability 0.4 give a number hint to the next player with a required card,
  *   otherwise discard a random card.
+ * hanabAI.RolloutPolicy plays by the same rules on a CompactState, for simulations.
  *@author Tim French 
  **/
 public class BasicAgent implements Agent{
@@ -20,6 +21,10 @@ public class BasicAgent implements Agent{
   private boolean firstAction = true;
   private int numPlayers;
   private int index;
+  //what the agent knows about its hand
+  private BeliefTracker beliefs = new BeliefTracker();
+  //a buffer for the legal moves of a state
+  private int[] moves = new int[CompactState.MAX_MOVES];
 
   /**
    * Default constructor, does nothing.
@@ -32,14 +37,9 @@ public class BasicAgent implements Agent{
    **/
   public void init(State s){
     numPlayers = s.getPlayers().length;
-    if(numPlayers>3){
-      colours = new Colour[4];
-      values = new int[4];
-    }
-    else{
-      colours = new Colour[5];
-      values = new int[5];
-    }
+    int handSize = s.getConfig().getHandSize(numPlayers);
+    colours = new Colour[handSize];
+    values = new int[handSize];
     index = s.getNextPlayer();
     firstAction = false;
   }
@@ -89,25 +89,11 @@ public class BasicAgent implements Agent{
 
   //updates colours and values from hints received
   public void getHints(State s){
-    try{
-      State t = (State) s.clone();
-      for(int i = 0; i<Math.min(numPlayers-1,s.getOrder());i++){
-        Action a = t.getPreviousAction();
-        if((a.getType()==ActionType.HINT_COLOUR || a.getType() == ActionType.HINT_VALUE) && a.getHintReceiver()==index){
-          boolean[] hints = t.getPreviousAction().getHintedCards();
-          for(int j = 0; j<hints.length; j++){
-            if(hints[j]){
-              if(a.getType()==ActionType.HINT_COLOUR) 
-                colours[j] = a.getColour();
-              else
-                values[j] = a.getValue();  
-            }
-          }
-        } 
-        t = t.getPreviousState();
-      }
+    beliefs.update(s);
+    for(int j = 0; j<colours.length; j++){
+      colours[j] = beliefs.getColour(index, j);
+      values[j] = beliefs.getValue(index, j);
     }
-    catch(IllegalActionException e){e.printStackTrace();}
   }
 
   //returns the value of the next playable card of the given colour
@@ -131,7 +117,7 @@ public class BasicAgent implements Agent{
 
   //discards the first card known to be unplayable.
   public Action discardKnown(State s) throws IllegalActionException{
-    if (s.getHintTokens() != 8) {
+    if (s.getHintTokens() != s.getConfig().getHintTokens()) {
       for(int i = 0; i<colours.length; i++){
         if(colours[i]!=null && values[i]>0 && values[i]<playable(s,colours[i])){
           colours[i] = null;
@@ -156,18 +142,18 @@ public class BasicAgent implements Agent{
           if(c!=null && c.getValue()==playable(s,c.getColour())){
             //flip coin
             if(Math.random()>0.5){//give colour hint
-              boolean[] col = new boolean[hand.length];
-              for(int k = 0; k< col.length; k++){
-                col[k]=c.getColour().equals((hand[k]==null?null:hand[k].getColour()));
+              int col = 0;
+              for(int k = 0; k< hand.length; k++){
+                if(hand[k]!=null && hand[k].getColour()==c.getColour()) col|=1<<k;
               }
-              return new Action(index,toString(),ActionType.HINT_COLOUR,hintee,col,c.getColour());
+              return new Action(index,toString(),ActionType.HINT_COLOUR,hintee,col,hand.length,c.getColour());
             }
             else{//give value hint
-              boolean[] val = new boolean[hand.length];
-              for(int k = 0; k< val.length; k++){
-                val[k]=c.getValue() == (hand[k]==null?-1:hand[k].getValue());
+              int val = 0;
+              for(int k = 0; k< hand.length; k++){
+                if(hand[k]!=null && hand[k].getValue()==c.getValue()) val|=1<<k;
               }
-              return new Action(index,toString(),ActionType.HINT_VALUE,hintee,val,c.getValue());
+              return new Action(index,toString(),ActionType.HINT_VALUE,hintee,val,hand.length,c.getValue());
             }
           }
         }
@@ -181,7 +167,8 @@ public class BasicAgent implements Agent{
     java.util.Random rand = new java.util.Random();
     for(int i = 0; i<s.getFuseTokens(); i++){
       if(rand.nextDouble()<0.05){
-        int cardIndex = rand.nextInt(colours.length);
+        int cardIndex = randomCard(s, Move.PLAY, rand);
+        if(cardIndex==-1) return null;
         colours[cardIndex] = null;
         values[cardIndex] = 0;
         return new Action(index, toString(), ActionType.PLAY, cardIndex);
@@ -192,9 +179,10 @@ public class BasicAgent implements Agent{
   
   //discard a random card
   public Action discardGuess(State s) throws IllegalActionException{
-    if (s.getHintTokens() != 8) {
+    if (s.getHintTokens() != s.getConfig().getHintTokens()) {
       java.util.Random rand = new java.util.Random();
-      int cardIndex = rand.nextInt(colours.length);
+      int cardIndex = randomCard(s, Move.DISCARD, rand);
+      if(cardIndex==-1) return null;
       colours[cardIndex] = null;
       values[cardIndex] = 0;
       return new Action(index, toString(), ActionType.DISCARD, cardIndex);
@@ -202,13 +190,26 @@ public class BasicAgent implements Agent{
     return null;
   }
 
+  //picks a random card that can legally be played or discarded, or -1 if there is none
+  private int randomCard(State s, int type, java.util.Random rand) throws IllegalActionException{
+    int n = s.legalMoves(moves), count = 0;
+    for(int i = 0; i<n; i++) if(Move.type(moves[i])==type) moves[count++] = moves[i];
+    return count==0?-1:Move.card(moves[rand.nextInt(count)]);
+  }
+
   //gives random hint of a card in next players hand
   //flips a coin to determine whether it is a colour hint or value hint
   //return null if no hint token left
   public Action hintRandom(State s) throws IllegalActionException{
     if(s.getHintTokens()>0){
+        //the next player with a card, as hands can run out of cards when they are small
         int hintee = (index+1)%numPlayers;
         Card[] hand = s.getHand(hintee);
+        while(isEmpty(hand)){
+          hintee = (hintee+1)%numPlayers;
+          if(hintee==index) return null;
+          hand = s.getHand(hintee);
+        }
 
         java.util.Random rand = new java.util.Random();
         int cardIndex = rand.nextInt(hand.length);
@@ -216,19 +217,18 @@ public class BasicAgent implements Agent{
         Card c = hand[cardIndex];
 
         if(Math.random()>0.5){//give colour hint
-          boolean[] col = new boolean[hand.length];
-          for(int k = 0; k< col.length; k++){
-            col[k]=c.getColour().equals((hand[k]==null?null:hand[k].getColour()));
+          int col = 0;
+          for(int k = 0; k< hand.length; k++){
+            if(hand[k]!=null && hand[k].getColour()==c.getColour()) col|=1<<k;
           }
-          return new Action(index,toString(),ActionType.HINT_COLOUR,hintee,col,c.getColour());
+          return new Action(index,toString(),ActionType.HINT_COLOUR,hintee,col,hand.length,c.getColour());
         }
         else{//give value hint
-          boolean[] val = new boolean[hand.length];
-          for(int k = 0; k< val.length; k++){
-            if (hand[k] == null) continue;
-            val[k]=c.getValue() == (hand[k]==null?-1:hand[k].getValue());
+          int val = 0;
+          for(int k = 0; k< hand.length; k++){
+            if(hand[k]!=null && hand[k].getValue()==c.getValue()) val|=1<<k;
           }
-          return new Action(index,toString(),ActionType.HINT_VALUE,hintee,val,c.getValue());
+          return new Action(index,toString(),ActionType.HINT_VALUE,hintee,val,hand.length,c.getValue());
         }
 
       }
@@ -236,4 +236,10 @@ public class BasicAgent implements Agent{
     return null;
   }
 
+  //tests if a hand has no cards left
+  private static boolean isEmpty(Card[] hand){
+    for(Card c: hand) if(c!=null) return false;
+    return true;
+  }
+
 }
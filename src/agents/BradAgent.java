@@ -34,13 +34,9 @@ public class BradAgent implements Agent {
      **/
     public void init(State s) {
         numPlayers = s.getPlayers().length;
-        if (numPlayers > 3) {
-            colours = new Colour[4];
-            values = new int[4];
-        } else {
-            colours = new Colour[5];
-            values = new int[5];
-        }
+        int handSize = s.getConfig().getHandSize(numPlayers);
+        colours = new Colour[handSize];
+        values = new int[handSize];
         index = s.getNextPlayer();
         firstAction = false;
     }
@@ -101,9 +97,9 @@ public class BradAgent implements Agent {
                 Action a = t.getPreviousAction();
                 if ((a.getType() == ActionType.HINT_COLOUR || a.getType() == ActionType.HINT_VALUE)
                         && a.getHintReceiver() == index) {
-                    boolean[] hints = t.getPreviousAction().getHintedCards();
-                    for (int j = 0; j < hints.length; j++) {
-                        if (hints[j]) {
+                    int hints = a.getHintMask();
+                    for (int j = 0; j < colours.length; j++) {
+                        if ((hints >>> j & 1) != 0) {
                             if (a.getType() == ActionType.HINT_COLOUR)
                                 colours[j] = a.getColour();
                             else
@@ -141,7 +137,7 @@ public class BradAgent implements Agent {
 
     // discards the first card known to be unplayable.
     public Action discardKnown(State s) throws IllegalActionException {
-        if (s.getHintTokens() != 8) {
+        if (s.getHintTokens() != s.getConfig().getHintTokens()) {
             for (int i = 0; i < colours.length; i++) {
                 if (colours[i] != null && values[i] > 0 && values[i] < playable(s, colours[i])) {
                     colours[i] = null;
@@ -166,17 +162,19 @@ public class BradAgent implements Agent {
                     if (c != null && c.getValue() == playable(s, c.getColour())) {
                         // flip coin
                         if (Math.random() > 0.5) {// give colour hint
-                            boolean[] col = new boolean[hand.length];
-                            for (int k = 0; k < col.length; k++) {
-                                col[k] = c.getColour().equals((hand[k] == null ? null : hand[k].getColour()));
+                            int col = 0;
+                            for (int k = 0; k < hand.length; k++) {
+                                if (hand[k] != null && hand[k].getColour() == c.getColour())
+                                    col |= 1 << k;
                             }
-                            return new Action(index, toString(), ActionType.HINT_COLOUR, hintee, col, c.getColour());
+                            return new Action(index, toString(), ActionType.HINT_COLOUR, hintee, col, hand.length, c.getColour());
                         } else {// give value hint
-                            boolean[] val = new boolean[hand.length];
-                            for (int k = 0; k < val.length; k++) {
-                                val[k] = c.getValue() == (hand[k] == null ? -1 : hand[k].getValue());
+                            int val = 0;
+                            for (int k = 0; k < hand.length; k++) {
+                                if (hand[k] != null && hand[k].getValue() == c.getValue())
+                                    val |= 1 << k;
                             }
-                            return new Action(index, toString(), ActionType.HINT_VALUE, hintee, val, c.getValue());
+                            return new Action(index, toString(), ActionType.HINT_VALUE, hintee, val, hand.length, c.getValue());
                         }
                     }
                 }
@@ -201,7 +199,7 @@ public class BradAgent implements Agent {
 
     // discard a random card
     public Action discardGuess(State s) throws IllegalActionException {
-        if (s.getHintTokens() != 8) {
+        if (s.getHintTokens() != s.getConfig().getHintTokens()) {
             java.util.Random rand = new java.util.Random();
             int cardIndex = rand.nextInt(colours.length);
             colours[cardIndex] = null;
@@ -216,8 +214,15 @@ public class BradAgent implements Agent {
     // return null if no hint token left
     public Action hintRandom(State s) throws IllegalActionException {
         if (s.getHintTokens() > 0) {
+            // the next player with a card, as hands can run out of cards when they are small
             int hintee = (index + 1) % numPlayers;
             Card[] hand = s.getHand(hintee);
+            while (isEmpty(hand)) {
+                hintee = (hintee + 1) % numPlayers;
+                if (hintee == index)
+                    return null;
+                hand = s.getHand(hintee);
+            }
 
             java.util.Random rand = new java.util.Random();
             int cardIndex = rand.nextInt(hand.length);
@@ -226,19 +231,19 @@ public class BradAgent implements Agent {
             Card c = hand[cardIndex];
 
             if (Math.random() > 0.5) {// give colour hint
-                boolean[] col = new boolean[hand.length];
-                for (int k = 0; k < col.length; k++) {
-                    col[k] = c.getColour().equals((hand[k] == null ? null : hand[k].getColour()));
+                int col = 0;
+                for (int k = 0; k < hand.length; k++) {
+                    if (hand[k] != null && hand[k].getColour() == c.getColour())
+                        col |= 1 << k;
                 }
-                return new Action(index, toString(), ActionType.HINT_COLOUR, hintee, col, c.getColour());
+                return new Action(index, toString(), ActionType.HINT_COLOUR, hintee, col, hand.length, c.getColour());
             } else {// give value hint
-                boolean[] val = new boolean[hand.length];
-                for (int k = 0; k < val.length; k++) {
-                    if (hand[k] == null)
-                        continue;
-                    val[k] = c.getValue() == (hand[k] == null ? -1 : hand[k].getValue());
+                int val = 0;
+                for (int k = 0; k < hand.length; k++) {
+                    if (hand[k] != null && hand[k].getValue() == c.getValue())
+                        val |= 1 << k;
                 }
-                return new Action(index, toString(), ActionType.HINT_VALUE, hintee, val, c.getValue());
+                return new Action(index, toString(), ActionType.HINT_VALUE, hintee, val, hand.length, c.getValue());
             }
 
         }
@@ -246,4 +251,12 @@ public class BradAgent implements Agent {
         return null;
     }
 
+    // tests if a hand has no cards left
+    private static boolean isEmpty(Card[] hand) {
+        for (Card c : hand)
+            if (c != null)
+                return false;
+        return true;
+    }
+
 }
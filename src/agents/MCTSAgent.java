@@ -0,0 +1,208 @@
+package agents;
+import hanabAI.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * An Information Set Monte Carlo Tree Search agent for playing Hanabi.
+ * Each iteration samples the agent's hidden hand and the deck with a Determinizer, constrained by what a BeliefTracker knows of the hand,
+ * descends a tree of moves shared by all the samples (single observer ISMCTS),
+ * and plays the rest of the game out on a CompactState with a RolloutPolicy, which makes the moves BasicAgent would,
+ * starting from what each player knows of their hand at the root.
+ * The search is root parallel: each thread grows its own tree,
+ * and adds the statistics of the agent's possible moves into shared atomic counters when its budget is spent.
+ * The move with the most visits is played.
+ * Note that the tournament rules do not allow agents to use more than one thread,
+ * so the default constructor searches on one thread, and more threads are only for experiments outside a tournament.
+ **/
+public class MCTSAgent implements Agent{
+
+  /**The exploration constant for UCB**/
+  private static final double EXPLORATION = 0.7;
+  /**The fixed point scale of the values in the shared counters**/
+  private static final long SCALE = 1L<<20;
+
+  private final int threads;
+  private final long budgetNanos;
+  private final int iterations;
+  private final SplittableRandom seeds;
+  private final BeliefTracker beliefs = new BeliefTracker();
+
+  /**
+   * Default constructor, searching on a single thread for up to 900ms or 20000 iterations per move, as the tournament rules require.
+   **/
+  public MCTSAgent(){
+    this(1, 900, 20000);
+  }
+
+  /**
+   * Creates an agent with the given budget per move.
+   * @param threads the number of threads to search with
+   * @param millis the time budget for each move, in milliseconds
+   * @param iterations the maximum number of iterations for each move, shared between the threads
+   **/
+  public MCTSAgent(int threads, long millis, int iterations){
+    this.threads = Math.max(1, threads);
+    this.budgetNanos = millis*1000000L;
+    this.iterations = iterations;
+    this.seeds = new SplittableRandom();
+  }
+
+  /**
+   * Returns the name ISMCTS.
+   * @return the String "ISMCTS"
+   * */
+  public String toString(){return "ISMCTS";}
+
+  /**
+   * Searches for the best move in the given state.
+   * @param s the current state of the game, with the agent as observer.
+   * @return the action the player takes.
+   **/
+  public Action doAction(State s){
+    long deadline = System.nanoTime()+budgetNanos;
+    beliefs.update(s);
+    Determinizer det = new Determinizer(s, beliefs.getMasks(s.getObserver()));
+    int[] rootMoves = new int[CompactState.MAX_MOVES];
+    CompactState sample = det.sample(seeds.split());
+    int n = sample.legalMoves(rootMoves);
+    RolloutPolicy knowledge = new RolloutPolicy();
+    knowledge.reset(sample, beliefs);
+    AtomicLongArray visits = new AtomicLongArray(n);
+    AtomicLongArray values = new AtomicLongArray(n);
+    Search[] searches = new Search[threads];
+    for(int t = 0; t<threads; t++)
+      searches[t] = new Search(det, knowledge, seeds.split(), rootMoves, n, visits, values, deadline, (iterations+t)/threads);
+    if(threads==1) searches[0].run();
+    else{
+      ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[threads];
+      for(int t = 0; t<threads; t++) tasks[t] = ForkJoinTask.adapt(searches[t]);
+      ForkJoinTask.invokeAll(tasks);
+    }
+    int best = 0;
+    for(int i = 1; i<n; i++)
+      if(visits.get(i)>visits.get(best) || (visits.get(i)==visits.get(best) && values.get(i)>values.get(best))) best = i;
+    try{
+      return s.toAction(rootMoves[best]);
+    }
+    catch(IllegalActionException e){
+      e.printStackTrace();
+      throw new RuntimeException("Something has gone very wrong");
+    }
+  }
+
+  //A node of the search tree, reached by a move
+  private static class Node{
+    final int move;
+    int visits;
+    int avail;
+    double total;
+    Node[] children = new Node[8];
+    int size;
+
+    Node(int move){this.move = move;}
+
+    Node child(int move){
+      for(int i = 0; i<size; i++) if(children[i].move==move) return children[i];
+      return null;
+    }
+
+    Node add(int move){
+      if(size==children.length) children = java.util.Arrays.copyOf(children, size*2);
+      return children[size++] = new Node(move);
+    }
+  }
+
+  //A single threaded search, adding its statistics for the root moves to the shared counters when it is done
+  private static class Search implements Runnable{
+    final Determinizer det;
+    //what the players know at the root, and the policy following a determinization from there
+    final RolloutPolicy knowledge, policy = new RolloutPolicy();
+    final SplittableRandom r;
+    final int[] rootMoves;
+    final int n;
+    final AtomicLongArray visits, values;
+    final long deadline;
+    final int iterations;
+    final int[] moves = new int[CompactState.MAX_MOVES];
+    Node[] path = new Node[128];
+    //the determinization of the current iteration, sampled in place after the first
+    CompactState sample;
+
+    Search(Determinizer det, RolloutPolicy knowledge, SplittableRandom r, int[] rootMoves, int n, AtomicLongArray visits, AtomicLongArray values, long deadline, int iterations){
+      this.det = det;
+      this.knowledge = knowledge;
+      this.r = r;
+      this.rootMoves = rootMoves;
+      this.n = n;
+      this.visits = visits;
+      this.values = values;
+      this.deadline = deadline;
+      this.iterations = iterations;
+    }
+
+    public void run(){
+      Node root = new Node(-1);
+      for(int it = 0; it<iterations; it++){
+        if((it&15)==0 && System.nanoTime()>deadline) break;
+        iterate(root);
+      }
+      for(int i = 0; i<n; i++){
+        Node c = root.child(rootMoves[i]);
+        if(c==null) continue;
+        visits.addAndGet(i, c.visits);
+        values.addAndGet(i, (long)(c.total*SCALE));
+      }
+    }
+
+    //one determinized descent, expansion, rollout and backup
+    void iterate(Node root){
+      if(sample==null) sample = det.sample(r);
+      else det.sample(r, sample);
+      CompactState s = sample;
+      policy.copyFrom(knowledge);
+      Node node = root;
+      int depth = 0;
+      path[depth++] = root;
+      while(!s.gameOver()){
+        int count = s.legalMoves(moves);
+        //expand the first untried move, in random order
+        int untried = 0;
+        for(int i = 0; i<count; i++){
+          if(node.child(moves[i])==null) moves[untried++] = moves[i];
+        }
+        if(untried>0){
+          int move = moves[r.nextInt(untried)];
+          for(int i = 0; i<node.size; i++) if(s.legal(node.children[i].move)) node.children[i].avail++;
+          node = node.add(move);
+          node.avail++;
+          policy.apply(s, move);
+          if(depth==path.length) path = java.util.Arrays.copyOf(path, depth*2);
+          path[depth++] = node;
+          break;
+        }
+        //all legal moves have been tried: choose by UCB among the children available in this determinization
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i<node.size; i++){
+          Node c = node.children[i];
+          if(!s.legal(c.move)) continue;
+          c.avail++;
+          double v = c.total/c.visits+EXPLORATION*Math.sqrt(Math.log(c.avail)/c.visits);
+          if(v>bestValue){bestValue = v; best = c;}
+        }
+        node = best;
+        policy.apply(s, node.move);
+        if(depth==path.length) path = java.util.Arrays.copyOf(path, depth*2);
+        path[depth++] = node;
+      }
+      double reward = (double)policy.rollout(s, r)/s.getConfig().getMaxScore();
+      for(int i = 0; i<depth; i++){
+        path[i].visits++;
+        path[i].total+=reward;
+      }
+    }
+  }
+}
@@ -16,8 +16,10 @@ public class Action{
   private int card;
   //The player recieving the hint, if the action is a hint
   private int hintee;
-  //The cards hinted at, if the action is a hint
-  private boolean[] cards;
+  //The cards hinted at, if the action is a hint, with bit i set if the ith card matches the hint
+  private int mask;
+  //The number of cards in the hintee's hand, if the action is a hint
+  private int hintSize;
   //The Colour hinted, if the action is a colour hint
   private Colour colour;
   //The value hinted, if the action is a value hint.
@@ -53,10 +55,23 @@ public class Action{
    * @throws IllegalActionException if the wrong ActionType is given
    * */
   public Action(int player, String playerName, ActionType type, int hintReceiver, boolean[] cards, Colour hint) throws IllegalActionException{
+    this(player, playerName, type, hintReceiver, mask(cards), cards.length, hint);
+  }
+
+  /**Constructor to create colour hint actions from a mask of the hinted cards
+   * @param player the index of the player performing the action
+   * @param playerName the name of the player performing the action
+   * @param type the type of the action, must be ActionType.HINT_COLOUR
+   * @param hintReceiver the index of the player recieving the hint
+   * @param mask the cards hinted, with bit i set if and only if the ith card in the hintee's hand matches the hint
+   * @param handSize the number of cards in the hintee's hand
+   * @param hint the colour hinted at.
+   * @throws IllegalActionException if the wrong ActionType is given, or the mask has bits beyond the hand
+   * */
+  public Action(int player, String playerName, ActionType type, int hintReceiver, int mask, int handSize, Colour hint) throws IllegalActionException{
     this(player, playerName, type);
     if(type != ActionType.HINT_COLOUR) throw new IllegalActionException("Wrong parameters for action type");
-    this.hintee = hintReceiver;
-    this.cards = cards;
+    setHint(hintReceiver, mask, handSize);
     this.colour = hint;
   }
   
@@ -70,13 +85,42 @@ public class Action{
    * @throws IllegalActionException if the wrong ActionType is given
    * */
   public Action(int player, String playerName, ActionType type, int hintReceiver, boolean[] cards, int hint) throws IllegalActionException{
+    this(player, playerName, type, hintReceiver, mask(cards), cards.length, hint);
+  }
+
+  /**Constructor to create value hint actions from a mask of the hinted cards
+   * @param player the index of the player performing the action
+   * @param playerName the name of the player performing the action
+   * @param type the type of the action, must be ActionType.HINT_VALUE
+   * @param hintReceiver the index of the player recieving the hint
+   * @param mask the cards hinted, with bit i set if and only if the ith card in the hintee's hand matches the hint
+   * @param handSize the number of cards in the hintee's hand
+   * @param hint the value hinted at.
+   * @throws IllegalActionException if the wrong ActionType is given, or the mask has bits beyond the hand
+   * */
+  public Action(int player, String playerName, ActionType type, int hintReceiver, int mask, int handSize, int hint) throws IllegalActionException{
     this(player, playerName, type);
     if(type != ActionType.HINT_VALUE) throw new IllegalActionException("Wrong parameters for action type");
-    this.hintee = hintReceiver;
-    this.cards = cards;
+    setHint(hintReceiver, mask, handSize);
     this.value = hint;
   }
 
+  //sets the hintee and the cards hinted
+  private void setHint(int hintReceiver, int mask, int handSize) throws IllegalActionException{
+    if(handSize<0 || handSize>31 || (mask>>>handSize)!=0) throw new IllegalActionException("Hint mask does not fit the hand");
+    this.hintee = hintReceiver;
+    this.mask = mask;
+    this.hintSize = handSize;
+  }
+
+  //converts a boolean array of hinted cards to a mask
+  private static int mask(boolean[] cards) throws IllegalActionException{
+    if(cards.length>31) throw new IllegalActionException("Hint mask does not fit the hand");
+    int mask = 0;
+    for(int i = 0; i<cards.length; i++) if(cards[i]) mask|=1<<i;
+    return mask;
+  }
+
   /**
    * get the player index
    * @return the index of the player performing the action
@@ -112,12 +156,35 @@ public class Action{
 
   /**
    * gets an array of booleans indicating the cards that are the subject of the hint
+   * This method allocates a new array on every call: getHintMask is faster.
    * @return an array of booleans, such that the ith valeu is true if and only if the ith card in the hintReceivers hand matches the hint (indexing from 0)
    * @throws IllegalActionException if the action type is not HINT_COLOUR or HINT_VALUE
    **/ 
   public boolean[] getHintedCards() throws IllegalActionException{
     if(type != ActionType.HINT_COLOUR && type!= ActionType.HINT_VALUE) throw new IllegalActionException("Action is not a hint");
-    return cards.clone();
+    boolean[] cards = new boolean[hintSize];
+    for(int i = 0; i<hintSize; i++) cards[i] = (mask>>>i&1)!=0;
+    return cards;
+  }
+
+  /**
+   * gets a mask of the cards that are the subject of the hint
+   * @return a mask with bit i set if and only if the ith card in the hintReceivers hand matches the hint (indexing from 0)
+   * @throws IllegalActionException if the action type is not HINT_COLOUR or HINT_VALUE
+   **/ 
+  public int getHintMask() throws IllegalActionException{
+    if(type != ActionType.HINT_COLOUR && type!= ActionType.HINT_VALUE) throw new IllegalActionException("Action is not a hint");
+    return mask;
+  }
+
+  /**
+   * gets the number of cards in the hint receiver's hand when the hint was given
+   * @return the length of the array returned by getHintedCards
+   * @throws IllegalActionException if the action type is not HINT_COLOUR or HINT_VALUE
+   **/ 
+  public int getHintSize() throws IllegalActionException{
+    if(type != ActionType.HINT_COLOUR && type!= ActionType.HINT_VALUE) throw new IllegalActionException("Action is not a hint");
+    return hintSize;
   }
 
   /**
@@ -145,20 +212,17 @@ public class Action{
    * @return a description of the action, depending on type
    * */
   public String toString(){
-    String ret;
+    StringBuilder ret = new StringBuilder("Player ").append(playerName).append('(').append(player).append(')');
     switch(type){
-      case PLAY: return "Player "+playerName+ "("+player+") plays the card at position "+card;
-      case DISCARD: return "Player "+playerName+ "("+player+") discards the card at position "+card;
+      case PLAY: return ret.append(" plays the card at position ").append(card).toString();
+      case DISCARD: return ret.append(" discards the card at position ").append(card).toString();
       case HINT_COLOUR: 
-       ret = "Player "+playerName+ "("+player+") gives the hint: \"Player "+hintee+", cards at position"+(cards.length>1?"s":"");
-       for(int i=0; i<cards.length; i++)ret += (cards[i]?" "+i:"");
-       ret+= " have colour "+colour+"\"";
-       return ret;
       case HINT_VALUE: 
-       ret = "Player "+playerName+ "("+player+") gives the hint: \"Player "+hintee+", cards at position"+(cards.length>1?"s":"");
-       for(int i=0; i<cards.length; i++)ret += (cards[i]?" "+i:"");
-       ret+= " have value "+value+"\"";
-       return ret;
+       ret.append(" gives the hint: \"Player ").append(hintee).append(", cards at position").append(hintSize>1?"s":"");
+       for(int i=0; i<hintSize; i++)if((mask>>>i&1)!=0) ret.append(' ').append(i);
+       if(type==ActionType.HINT_COLOUR) ret.append(" have colour ").append(colour);
+       else ret.append(" have value ").append(value);
+       return ret.append('"').toString();
     }
     return "";
   }
@@ -0,0 +1,17 @@
+package hanabAI;
+
+/**
+ * An interface for creating the agents that take part in a game of Hanabi.
+ * Agents keep state between moves, so a fresh line-up is created for every game.
+ * */
+public interface AgentFactory{
+
+  /**
+   * Creates a new line-up of agents for a single game.
+   * @return an array of 2-5 agents, by their index in the game
+   * */
+  public Agent[] create();
+
+}
+
+
@@ -0,0 +1,198 @@
+package hanabAI;
+
+/**
+ * A tracker of what each player knows about the cards in their own hand.
+ * For each slot of each hand the tracker keeps a mask of Card.IDS bits, with bit i set if the card could have id i (see Card.id),
+ * given the hints the player has received, including the cards each hint did not point at,
+ * and the cards that have been played or discarded.
+ * The tracker follows one game, and is brought up to date with update, which reads each new action once,
+ * so keeping it up to date costs O(hand size) per move rather than a scan of the history each turn.
+ * The masks are common knowledge: every player can work them out.
+ * The probabilities of the cards in a slot also use the cards the player can see in the other hands.
+ **/
+public class BeliefTracker{
+
+  /**The masks of each slot of each hand, from the hints alone**/
+  private int[][] masks;
+  /**The number of copies of each card played or discarded**/
+  private final int[] removed = new int[Card.IDS];
+  /**The mask of the cards whose every copy has been played or discarded**/
+  private int exhausted;
+  /**The mask of the cards in the game**/
+  private int all;
+  /**The order of the last state read**/
+  private int order = -1;
+  /**The last state read**/
+  private State last;
+
+  /**
+   * Creates a tracker, which knows nothing until it is first updated.
+   **/
+  public BeliefTracker(){}
+
+  /**
+   * Brings the tracker up to the given state, reading the actions made since the last update.
+   * If the tracker has not been updated before, or the state is earlier than the last one,
+   * the tracker is rebuilt from the actions in the state's history window.
+   * If some of the new actions are outside the history window, the tracker is rebuilt in the same way,
+   * and hints before the window are forgotten.
+   * @param s a state of the game the tracker follows
+   **/
+  public void update(State s){
+    int to = s.getOrder();
+    if(last==null || to<order || masks.length!=s.getPlayers().length){
+      rebuild(s);
+      return;
+    }
+    for(int k = order; k<to; k++){
+      Action a = s.actionAt(k);
+      if(a==null){
+        rebuild(s);
+        return;
+      }
+      try{
+        apply(a);
+        if(a.getType()==ActionType.PLAY || a.getType()==ActionType.DISCARD) remove(s.removedAt(k));
+      }
+      catch(IllegalActionException e){throw new IllegalArgumentException("Malformed action in history", e);}
+    }
+    order = to;
+    last = s;
+  }
+
+  //starts again from a state, with the cards removed so far, and the hints in its history window
+  private void rebuild(State s){
+    String[] players = s.getPlayers();
+    masks = new int[players.length][];
+    all = s.getConfig().getCardMask();
+    for(int p = 0; p<players.length; p++){
+      masks[p] = new int[s.getHand(p).length];
+      java.util.Arrays.fill(masks[p], all);
+    }
+    java.util.Arrays.fill(removed, 0);
+    exhausted = 0;
+    for(Card c: s.getDiscards()) remove(c);
+    for(Colour col: s.getConfig().getColours()) for(Card c: s.getFirework(col)) remove(c);
+    int from = s.getOrder();
+    while(s.actionAt(from-1)!=null) from--;
+    try{
+      for(int k = from; k<s.getOrder(); k++) apply(s.actionAt(k));
+    }
+    catch(IllegalActionException e){throw new IllegalArgumentException("Malformed action in history", e);}
+    order = s.getOrder();
+    last = s;
+  }
+
+  //updates the masks for an action: a hint narrows each slot of the hintee, and a play or discard replaces a card
+  private void apply(Action a) throws IllegalActionException{
+    switch(a.getType()){
+      case PLAY:
+      case DISCARD:
+        masks[a.getPlayer()][a.getCard()] = all;
+        break;
+      default:
+        int match = a.getType()==ActionType.HINT_COLOUR?Determinizer.colourMask(a.getColour().ordinal()):Determinizer.valueMask(a.getValue());
+        int hinted = a.getHintMask();
+        int[] hand = masks[a.getHintReceiver()];
+        for(int i = 0; i<hand.length; i++) hand[i]&=((hinted>>>i&1)!=0?match:~match);
+    }
+  }
+
+  //counts a card as played or discarded
+  private void remove(Card c){
+    if(c==null) return;
+    int id = c.id();
+    if(++removed[id]>=Card.count(id)) exhausted|=1<<id;
+  }
+
+  /**
+   * Gets what a player knows about a card in their hand, from the hints they have received and the cards played or discarded.
+   * @param player the index of the player
+   * @param slot the position of the card in the player's hand
+   * @return a mask with bit i set if the card could have id i
+   * @throws IllegalStateException if the tracker has not been updated
+   **/
+  public int getMask(int player, int slot) throws IllegalStateException{
+    if(last==null) throw new IllegalStateException("Tracker has not been updated");
+    return masks[player][slot]&~exhausted;
+  }
+
+  /**
+   * Gets what a player knows about each card in their hand, as for getMask.
+   * The masks may be given to a Determinizer.
+   * @param player the index of the player
+   * @return a mask for each slot of the player's hand
+   * @throws IllegalStateException if the tracker has not been updated
+   **/
+  public int[] getMasks(int player) throws IllegalStateException{
+    if(last==null) throw new IllegalStateException("Tracker has not been updated");
+    int[] m = masks[player].clone();
+    for(int i = 0; i<m.length; i++) m[i]&=~exhausted;
+    return m;
+  }
+
+  /**
+   * Gets the colour of a card, if the player knows it
+   * @param player the index of the player
+   * @param slot the position of the card in the player's hand
+   * @return the colour of the card, or null if the player does not know it
+   * @throws IllegalStateException if the tracker has not been updated
+   **/
+  public Colour getColour(int player, int slot) throws IllegalStateException{
+    int mask = getMask(player, slot);
+    for(Colour c: Colour.values())
+      if(mask!=0 && (mask&~Determinizer.colourMask(c.ordinal()))==0) return c;
+    return null;
+  }
+
+  /**
+   * Gets the value of a card, if the player knows it
+   * @param player the index of the player
+   * @param slot the position of the card in the player's hand
+   * @return the value of the card, or 0 if the player does not know it
+   * @throws IllegalStateException if the tracker has not been updated
+   **/
+  public int getValue(int player, int slot) throws IllegalStateException{
+    int mask = getMask(player, slot);
+    for(int v = 1; v<=5; v++)
+      if(mask!=0 && (mask&~Determinizer.valueMask(v))==0) return v;
+    return 0;
+  }
+
+  /**
+   * Gets the number of copies of a card that have been played or discarded
+   * @param id the id of the card
+   * @return the number of copies in the fireworks or the discards
+   **/
+  public int getRemoved(int id){return removed[id];}
+
+  /**
+   * Computes the probability of each card being in a slot, from the player's point of view:
+   * each card the slot could hold, given the mask, is weighted by the number of copies the player cannot see.
+   * The other slots of the hand are not taken into account, so these are the probabilities of a card drawn with only this slot's constraints.
+   * Writes the probabilities into a caller-supplied array, without allocating.
+   * @param player the index of the player, which must be the observer of the last state if that state is local
+   * @param slot the position of the card in the player's hand
+   * @param probabilities an array of length Card.IDS, to be filled with the probability of each card id
+   * @return the number of unseen copies of the cards the slot could hold, or 0 if there are none, when the probabilities are all 0
+   * @throws IllegalStateException if the tracker has not been updated
+   * @throws IllegalArgumentException if the last state is local, and the player is not its observer
+   **/
+  public int getProbabilities(int player, int slot, double[] probabilities) throws IllegalStateException, IllegalArgumentException{
+    int mask = getMask(player, slot);
+    int observer = last.getObserver();
+    if(observer!=-1 && observer!=player) throw new IllegalArgumentException("Only the observer's view of the cards is known");
+    for(int id = 0; id<Card.IDS; id++) probabilities[id] = (mask>>>id&1)!=0?Card.count(id)-removed[id]:0;
+    for(int p = 0; p<masks.length; p++){
+      if(p==player) continue;
+      for(int i = 0; i<masks[p].length; i++){
+        Card c = last.cardAt(p, i);
+        if(c!=null && probabilities[c.id()]>0) probabilities[c.id()]--;
+      }
+    }
+    int total = 0;
+    for(int id = 0; id<Card.IDS; id++) total+=(int)probabilities[id];
+    for(int id = 0; id<Card.IDS; id++) probabilities[id] = total==0?0:probabilities[id]/total;
+    return total;
+  }
+}
@@ -1,11 +1,20 @@
 package hanabAI;
 
+import java.util.SplittableRandom;
 import java.util.Stack;
 
-/**An immutable class for representing Hanabi cards**/
+/**
+ * An immutable class for representing Hanabi cards.
+ * There is a canonical instance of each card, given by Card.of, 
+ * and each card has a dense id (colour ordinal*5 + value-1) so that tables of cards can be indexed by array.
+ **/
 public class Card{
   private Colour colour;//the card's colour
   private int value;//the number on the card
+  private int id;//the card's id
+
+  /**The number of distinct cards in any game, including the rainbow cards of variant games, and one more than the largest id**/
+  public static final int IDS = Colour.values().length*5;
 
   /**
    * Constrcuts a card with the specified colour and value
@@ -15,8 +24,29 @@ public class Card{
     if(val<1 || val>5) throw new IllegalArgumentException("Card value out of range");
     colour = c;
     value = val;
+    id = c.ordinal()*5+val-1;
+  }
+
+  /**
+   * Gives the canonical instance of a card
+   * @param c the colour of the card
+   * @param val the value of the card
+   * @return the shared card with the given colour and value
+   * @throws IllegalArgumentException if the Value is not between 1 and 5 inclusive
+   **/
+  public static Card of(Colour c, int val) throws IllegalArgumentException{
+    if(val<1 || val>5) throw new IllegalArgumentException("Card value out of range");
+    return CARDS[c.ordinal()*5+val-1];
   }
 
+  /**
+   * Gives the canonical instance of a card
+   * @param id the id of the card
+   * @return the shared card with the given id
+   * @throws ArrayIndexOutOfBoundsException if the id is not between 0 and IDS-1
+   **/
+  public static Card fromId(int id){return CARDS[id];}
+
   /**
    *Get the colour
    *@return the colour of the card
@@ -29,11 +59,38 @@ public class Card{
    */
   public int getValue(){return value;}
 
+  /**
+   *Get the id
+   *@return the id of the card, colour ordinal*5 + value-1
+   */
+  public int id(){return id;}
+
   /**
    *Get the numerosity of the card
    *@return the number of times the card appears in the deck
    */
-  public int getCount(){return (value==1?3:(value<5?2:1));}
+  public int getCount(){return COUNT[id];}
+
+  /**
+   *Get the numerosity of a card
+   *@param id the id of the card
+   *@return the number of times the card appears in the deck
+   */
+  public static int count(int id){return COUNT[id];}
+
+  /**
+   *Get the colour of a card
+   *@param id the id of the card
+   *@return the ordinal of the card's colour
+   */
+  public static int colourOrdinal(int id){return COLOUR[id];}
+
+  /**
+   *Get the value of a card
+   *@param id the id of the card
+   *@return the value of the card
+   */
+  public static int value(int id){return VALUE[id];}
 
   /**
    *Give a String representation of the card
@@ -42,28 +99,69 @@ public class Card{
   public String toString(){return colour.toString()+"-"+value;}
 
   /**
-   * Gives a new instance of a complete deck of cards, ordered by colour and value
+   * Gives a new instance of a complete standard deck of cards, ordered by colour and value.
+   * The decks of variant games are given by GameConfig.getDeck.
    * @return an array of cards corresponding to a standard Hanabi deck 
    **/
   public static Card[] getDeck(){return deck.clone();}
 
   /**
-   * Gives a new instance of a shuffled deck of cards deck of cards.
-   * Pairs of random cards are swapped 100 times, and placed into a stack. 
+   * Gives a new instance of a shuffled deck of cards.
+   * The deck is shuffled with a freshly seeded random number generator.
    * @return a stack of Hanabi cards in random order 
    **/
-  public static Stack<Card> shuffledDeck(){
-    Card[] deck = getDeck();
-    java.util.Random r = new java.util.Random();
-    for(int i = 0; i<1000; i++){
-      int a = r.nextInt(50);
-      int b = r.nextInt(50);
-      Card c = deck[a];
-      deck[a]= deck[b];
-      deck[b]=c;
+  public static Stack<Card> shuffledDeck(){return toDeck(shuffledOrder(new SplittableRandom()));}
+
+  /**
+   * Gives a new instance of a shuffled deck of cards.
+   * The same seed always gives the same deck, so deals can be replayed, or shared between line-ups of agents.
+   * @param seed the seed for the shuffle
+   * @return a stack of Hanabi cards in random order 
+   **/
+  public static Stack<Card> shuffledDeck(long seed){return toDeck(shuffledOrder(seed));}
+
+  /**
+   * Gives a random order of the deck.
+   * @param seed the seed for the shuffle
+   * @return an array containing each index of getDeck() exactly once, with the first card to be drawn at index 0
+   **/
+  public static int[] shuffledOrder(long seed){return shuffledOrder(new SplittableRandom(seed));}
+
+  /**
+   * Gives a random order of the deck.
+   * @param r the source of randomness for the shuffle
+   * @return an array containing each index of getDeck() exactly once, with the first card to be drawn at index 0
+   **/
+  public static int[] shuffledOrder(SplittableRandom r){
+    int[] order = new int[deck.length];
+    for(int i = 0; i<order.length; i++) order[i] = i;
+    shuffle(order, r);
+    return order;
+  }
+
+  /**
+   * Shuffles an array in place with the Fisher-Yates algorithm, so every permutation is equally likely.
+   * @param order the array to be shuffled
+   * @param r the source of randomness for the shuffle
+   **/
+  public static void shuffle(int[] order, SplittableRandom r){
+    for(int i = order.length-1; i>0; i--){
+      int j = r.nextInt(i+1);
+      int t = order[i];
+      order[i] = order[j];
+      order[j] = t;
     }
+  }
+
+  /**
+   * Builds a deck from an order of the cards.
+   * @param order an array of indices of getDeck(), with the first card to be drawn at index 0
+   * @return a stack of Hanabi cards, with the card at order[0] on top
+   * @throws ArrayIndexOutOfBoundsException if an index is not a position in the deck
+   **/
+  public static Stack<Card> toDeck(int[] order){
     Stack<Card> shuffle = new Stack<Card>();
-    for(Card c: deck) shuffle.push(c);
+    for(int i = order.length-1; i>=0; i--) shuffle.push(deck[order[i]]);
     return shuffle;
   }
 
@@ -72,28 +170,49 @@ public class Card{
    **/ 
   public boolean equals(Object o){
     if(o!=null && o instanceof Card){ 
-      Card c = (Card)o;
-      return c.colour == colour && c.value==value;
+      return ((Card)o).id==id;
     }
     return false;
   }
 
+  /**
+   * Cards with the same colour and value have the same hash code, their id.
+   **/ 
+  public int hashCode(){return id;}
+
+  //the canonical instance of each card, and per-id tables, by id
+  private static final Card[] CARDS = new Card[IDS];
+  private static final int[] COUNT = new int[IDS];
+  private static final int[] COLOUR = new int[IDS];
+  private static final int[] VALUE = new int[IDS];
+  static{
+    for(Colour c: Colour.values()){
+      for(int v = 1; v<=5; v++){
+        Card card = new Card(c,v);
+        CARDS[card.id] = card;
+        COUNT[card.id] = (v==1?3:(v<5?2:1));
+        COLOUR[card.id] = c.ordinal();
+        VALUE[card.id] = v;
+      }
+    }
+  }
+
   private static Card[] deck = {
-    new Card(Colour.BLUE,1),new Card(Colour.BLUE,1), new Card(Colour.BLUE,1),
-    new Card(Colour.BLUE,2),new Card(Colour.BLUE,2),new Card(Colour.BLUE,3),new Card(Colour.BLUE,3),
-    new Card(Colour.BLUE,4),new Card(Colour.BLUE,4),new Card(Colour.BLUE,5),
-    new Card(Colour.RED,1),new Card(Colour.RED,1), new Card(Colour.RED,1),
-    new Card(Colour.RED,2),new Card(Colour.RED,2),new Card(Colour.RED,3),new Card(Colour.RED,3),
-    new Card(Colour.RED,4),new Card(Colour.RED,4),new Card(Colour.RED,5),
-    new Card(Colour.GREEN,1),new Card(Colour.GREEN,1), new Card(Colour.GREEN,1),
-    new Card(Colour.GREEN,2),new Card(Colour.GREEN,2),new Card(Colour.GREEN,3),new Card(Colour.GREEN,3),
-    new Card(Colour.GREEN,4),new Card(Colour.GREEN,4),new Card(Colour.GREEN,5),
-    new Card(Colour.WHITE,1),new Card(Colour.WHITE,1), new Card(Colour.WHITE,1),
-    new Card(Colour.WHITE,2),new Card(Colour.WHITE,2),new Card(Colour.WHITE,3),new Card(Colour.WHITE,3),
-    new Card(Colour.WHITE,4),new Card(Colour.WHITE,4),new Card(Colour.WHITE,5),
-    new Card(Colour.YELLOW,1),new Card(Colour.YELLOW,1), new Card(Colour.YELLOW,1),
-    new Card(Colour.YELLOW,2),new Card(Colour.YELLOW,2),new Card(Colour.YELLOW,3),new Card(Colour.YELLOW,3),
-    new Card(Colour.YELLOW,4),new Card(Colour.YELLOW,4),new Card(Colour.YELLOW,5)
+    of(Colour.BLUE,1),of(Colour.BLUE,1), of(Colour.BLUE,1),
+    of(Colour.BLUE,2),of(Colour.BLUE,2),of(Colour.BLUE,3),of(Colour.BLUE,3),
+    of(Colour.BLUE,4),of(Colour.BLUE,4),of(Colour.BLUE,5),
+    of(Colour.RED,1),of(Colour.RED,1), of(Colour.RED,1),
+    of(Colour.RED,2),of(Colour.RED,2),of(Colour.RED,3),of(Colour.RED,3),
+    of(Colour.RED,4),of(Colour.RED,4),of(Colour.RED,5),
+    of(Colour.GREEN,1),of(Colour.GREEN,1), of(Colour.GREEN,1),
+    of(Colour.GREEN,2),of(Colour.GREEN,2),of(Colour.GREEN,3),of(Colour.GREEN,3),
+    of(Colour.GREEN,4),of(Colour.GREEN,4),of(Colour.GREEN,5),
+    of(Colour.WHITE,1),of(Colour.WHITE,1), of(Colour.WHITE,1),
+    of(Colour.WHITE,2),of(Colour.WHITE,2),of(Colour.WHITE,3),of(Colour.WHITE,3),
+    of(Colour.WHITE,4),of(Colour.WHITE,4),of(Colour.WHITE,5),
+    of(Colour.YELLOW,1),of(Colour.YELLOW,1), of(Colour.YELLOW,1),
+    of(Colour.YELLOW,2),of(Colour.YELLOW,2),of(Colour.YELLOW,3),of(Colour.YELLOW,3),
+    of(Colour.YELLOW,4),of(Colour.YELLOW,4),of(Colour.YELLOW,5)
   };
 
 }
@@ -1,8 +1,8 @@
 package hanabAI;
 
-/**The colours of Hanabi Cards**/
+/**The colours of Hanabi Cards. Rainbow is the sixth suit of variant games, and is not in the standard deck (see GameConfig)**/
 public enum Colour{
-  BLUE,RED,GREEN,WHITE,YELLOW;
+  BLUE,RED,GREEN,WHITE,YELLOW,RAINBOW;
 
   /**@return String representation of the colour**/
   public String toString(){
@@ -12,6 +12,7 @@ public enum Colour{
       case GREEN: return "Green";
       case WHITE: return "White";
       case YELLOW: return "Yellow";
+      case RAINBOW: return "Rainbow";
     }
     return "";
   }
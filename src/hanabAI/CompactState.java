@@ -0,0 +1,504 @@
+package hanabAI;
+
+import java.util.Stack;
+
+/**
+ * A compact, mutable representation of a global Hanabi game state, for simulations that play very many moves.
+ * Cards are represented by their ids (see Card.id),
+ * fireworks by the height of each colour, and discards by the number of copies of each card discarded.
+ * The deck is owned by the state, as an array of card ids and a cursor, and is shared between copies since it is never modified.
+ * Moves are encoded as ints (see Move) and applied in place, without allocating.
+ * Moves made with make are kept on an undo stack, so a search can walk down a line of play with make and back up it with unmake,
+ * instead of copying the state at each ply.
+ * The rules are the same as State.nextState, so the same deck and moves give the same game.
+ **/
+public class CompactState{
+
+  /**The id of an empty hand slot**/
+  public static final byte EMPTY = -1;
+  /**The largest number of legal moves in any state: plays and discards of 5 cards, and 10 hints to each of 4 other players,
+   * as a hand of at most 5 cards can be given at most 5 colour hints and 5 value hints**/
+  public static final int MAX_MOVES = 50;
+
+  /**The rules of the game**/
+  private final GameConfig config;
+  /**The most hint tokens there can be, the highest score, and the number of suits, from the rules**/
+  private final int maxHints, maxScore, suits;
+  /**The names of the players, shared between copies**/
+  private final String[] players;
+  /**The number of cards in each hand**/
+  private final int handSize;
+  /**The cards of each player, the ith card of player p at p*handSize+i**/
+  private final byte[] hands;
+  /**The height of the firework of each colour**/
+  private final byte[] fireworks;
+  /**The number of copies of each card discarded, or incorrectly played**/
+  private final byte[] discards;
+  /**The cards of the deck, in the order they are drawn, shared between copies**/
+  private final byte[] deck;
+  /**The position of the next card to be drawn**/
+  private int deckPos;
+  private int hints;
+  private int fuse;
+  private int order;
+  private int nextPlayer;
+  private int finalAction;
+  /**The sum of the firework heights**/
+  private int score;
+  /**The moves made with make, and the records needed to undo them, in pairs, allocated on the first make**/
+  private int[] undo;
+  /**The number of moves on the undo stack**/
+  private int depth;
+
+  /**
+   * Creates the first state of a game.
+   * @param players the names of the players in the game, in an array by index
+   * @param deckOrder the order of the deck, as indices of Card.getDeck() (the standard deck) with the first card to be drawn at index 0
+   * @throws IllegalArgumentException if there are the wrong number of players or cards
+   **/
+  public CompactState(String[] players, int[] deckOrder) throws IllegalArgumentException{
+    this(GameConfig.STANDARD, players, deckOrder);
+  }
+
+  /**
+   * Creates the first state of a variant of the game.
+   * @param config the rules of the game
+   * @param players the names of the players in the game, in an array by index
+   * @param deckOrder the order of the deck, as indices of config.getDeck() with the first card to be drawn at index 0
+   * @throws IllegalArgumentException if there are the wrong number of players or cards
+   **/
+  public CompactState(GameConfig config, String[] players, int[] deckOrder) throws IllegalArgumentException{
+    this(config, players, ids(config, deckOrder));
+    for(int i = 0; i<hands.length; i++) hands[i] = deck[deckPos++];
+  }
+
+  //creates a state with empty hands, fireworks and discards
+  private CompactState(GameConfig config, String[] players, byte[] deck) throws IllegalArgumentException{
+    if(config==null || players==null || players.length<2 || players.length >5 || deck == null || deck.length !=config.getDeckSize())
+      throw new IllegalArgumentException("incorrect parameters");
+    this.config = config;
+    maxHints = config.getHintTokens();
+    maxScore = config.getMaxScore();
+    suits = config.getSuits();
+    this.players = players.clone();
+    this.deck = deck;
+    handSize = config.getHandSize(players.length);
+    if(players.length*handSize>=deck.length) throw new IllegalArgumentException("The deck must have cards left after the deal");
+    hands = new byte[players.length*handSize];
+    fireworks = new byte[Colour.values().length];
+    discards = new byte[Card.IDS];
+    hints = maxHints;
+    fuse = config.getFuseTokens();
+    finalAction = -1;
+  }
+
+  //copy constructor
+  private CompactState(CompactState s){
+    this(s, s.deck);
+  }
+
+  //copies a state, replacing the deck with one of the same length
+  CompactState(CompactState s, byte[] deck){
+    config = s.config;
+    maxHints = s.maxHints;
+    maxScore = s.maxScore;
+    suits = s.suits;
+    players = s.players;
+    handSize = s.handSize;
+    hands = s.hands.clone();
+    fireworks = s.fireworks.clone();
+    discards = s.discards.clone();
+    this.deck = deck;
+    copyCounters(s);
+  }
+
+  /**
+   * Creates a compact copy of a global state, sharing the state's deck.
+   * @param s the state to be copied, which must not have a hidden hand
+   * @return a compact state equivalent to s
+   * @throws IllegalArgumentException if the state has an observer
+   **/
+  public static CompactState fromState(State s) throws IllegalArgumentException{
+    if(s.getObserver()!=-1) throw new IllegalArgumentException("State must be global");
+    byte[] cards = s.deckIds();
+    return copyOf(s, cards, cards.length-s.getDeckSize());
+  }
+
+  /**
+   * Creates a compact copy of a global state, with the deck held by the caller.
+   * @param s the state to be copied, which must not have a hidden hand
+   * @param deck the deck of the game, with the next card to be drawn on top
+   * @return a compact state equivalent to s
+   * @throws IllegalArgumentException if the state has an observer
+   **/
+  public static CompactState fromState(State s, Stack<Card> deck) throws IllegalArgumentException{
+    if(s.getObserver()!=-1) throw new IllegalArgumentException("State must be global");
+    //the cards that have already been drawn are never read, so the front of the deck is left as padding
+    byte[] cards = new byte[s.getConfig().getDeckSize()];
+    int pos = cards.length-deck.size();
+    for(int i = deck.size()-1, j = pos; i>=0; i--, j++) cards[j] = (byte)deck.get(i).id();
+    return copyOf(s, cards, pos);
+  }
+
+  /**
+   * Creates a compact copy of a local state, with the observer's hand empty,
+   * and a deck of the right size whose cards are unknown.
+   * The hand and deck are filled in by Determinizer.
+   **/
+  static CompactState withoutHand(State s, int deckSize){
+    int size = s.getConfig().getDeckSize();
+    return copyOf(s, new byte[size], size-deckSize);
+  }
+
+  //copies the public parts of a state, with the given deck
+  private static CompactState copyOf(State s, byte[] cards, int pos){
+    CompactState c = new CompactState(s.getConfig(), s.getPlayers(), cards);
+    c.deckPos = pos;
+    for(int p = 0; p<c.players.length; p++){
+      Card[] hand = s.getHand(p);
+      for(int i = 0; i<c.handSize; i++) c.hands[p*c.handSize+i] = hand[i]==null?EMPTY:(byte)hand[i].id();
+    }
+    for(Colour col: s.getConfig().getColours()){
+      c.fireworks[col.ordinal()] = (byte)s.getFirework(col).size();
+      c.score+=c.fireworks[col.ordinal()];
+    }
+    for(Card d: s.getDiscards()) c.discards[d.id()]++;
+    c.hints = s.getHintTokens();
+    c.fuse = s.getFuseTokens();
+    c.order = s.getOrder();
+    c.nextPlayer = s.getOrder()%c.players.length;
+    c.finalAction = s.getFinalActionIndex();
+    return c;
+  }
+
+  /**
+   * Creates a global State equal to this state, with no previous states.
+   * The discards of the State are in order of card id, as the order they were made in is not kept.
+   * @return a snapshot of the state
+   **/
+  public State toState(){return new State(this);}
+
+  //the cards of the deck in the order they are drawn, which must not be modified
+  byte[] deckIds(){return deck;}
+
+  /**
+   * Gets the cards left in the deck, for playing on from a snapshot made by toState with State.nextState(Action, Stack)
+   * @return a stack of the cards left in the deck, with the next card to be drawn on top
+   **/
+  public Stack<Card> getDeck(){
+    Stack<Card> cards = new Stack<Card>();
+    for(int i = deck.length-1; i>=deckPos; i--) cards.push(Card.fromId(deck[i]));
+    return cards;
+  }
+
+  /**
+   * Makes an independent copy of the state. Only the hands, fireworks and discards are copied, and the copy's undo stack is empty.
+   * @return a copy of the state
+   **/
+  public CompactState copy(){return new CompactState(this);}
+
+  /**
+   * Overwrites this state with another state of the same game, without allocating.
+   * The undo stack is cleared.
+   * @param s a state with the same players and deck
+   * @throws IllegalArgumentException if the states are from different games
+   **/
+  public void copyFrom(CompactState s) throws IllegalArgumentException{
+    if(s.deck!=deck) throw new IllegalArgumentException("States are from different games");
+    copyContents(s);
+  }
+
+  //overwrites this state with a copy of s whose cards left in the deck are taken from cards, without allocating
+  void copyFrom(CompactState s, byte[] cards) throws IllegalArgumentException{
+    if(!s.config.equals(config) || s.players.length!=players.length) throw new IllegalArgumentException("States are from different games");
+    System.arraycopy(cards, s.deckPos, deck, s.deckPos, deck.length-s.deckPos);
+    copyContents(s);
+  }
+
+  private void copyContents(CompactState s){
+    System.arraycopy(s.hands, 0, hands, 0, hands.length);
+    System.arraycopy(s.fireworks, 0, fireworks, 0, fireworks.length);
+    System.arraycopy(s.discards, 0, discards, 0, discards.length);
+    copyCounters(s);
+  }
+
+  private void copyCounters(CompactState s){
+    depth = 0;
+    deckPos = s.deckPos;
+    hints = s.hints;
+    fuse = s.fuse;
+    order = s.order;
+    nextPlayer = s.nextPlayer;
+    finalAction = s.finalAction;
+    score = s.score;
+  }
+
+  /**
+   * Tests the legality of an encoded move, with the same rules as State.legalAction.
+   * Discards are not legal when there are as many hint tokens as the game allows, empty slots cannot be played or discarded,
+   * and colours not in the game cannot be hinted.
+   * @param move the encoded move
+   * @return true if the move can be made in this state
+   **/
+  public boolean legal(int move){
+    if(gameOver() || Move.player(move)!=nextPlayer) return false;
+    switch(Move.type(move)){
+      case Move.PLAY:
+        return Move.card(move)<handSize && hands[nextPlayer*handSize+Move.card(move)]!=EMPTY;
+      case Move.DISCARD:
+        return hints<maxHints && Move.card(move)<handSize && hands[nextPlayer*handSize+Move.card(move)]!=EMPTY;
+      default:
+        int hintee = Move.hintee(move);
+        if(hints==0 || hintee>=players.length || hintee==nextPlayer) return false;
+        if(Move.type(move)==Move.HINT_COLOUR && Move.hint(move)>=suits) return false;
+        return Move.hintMask(move)==hintMask(hintee, Move.type(move), Move.hint(move));
+    }
+  }
+
+  /**
+   * Lists the legal moves of the next player, without allocating.
+   * Plays come first, then discards, then hints, with one colour hint for each colour and one value hint for each value in the hintee's hand.
+   * @param moves an array of at least MAX_MOVES elements, to be filled with encoded moves
+   * @return the number of legal moves, or 0 if the game is over
+   **/
+  public int legalMoves(int[] moves){
+    if(gameOver()) return 0;
+    int n = 0, base = nextPlayer*handSize;
+    for(int i = 0; i<handSize; i++) if(hands[base+i]!=EMPTY) moves[n++] = Move.play(nextPlayer, i);
+    if(hints<maxHints) for(int i = 0; i<handSize; i++) if(hands[base+i]!=EMPTY) moves[n++] = Move.discard(nextPlayer, i);
+    if(hints>0){
+      for(int p = 0; p<players.length; p++){
+        if(p==nextPlayer) continue;
+        int colours = 0, values = 0;
+        for(int i = 0, j = p*handSize; i<handSize; i++, j++){
+          if(hands[j]==EMPTY) continue;
+          colours|=1<<Card.colourOrdinal(hands[j]);
+          values|=1<<Card.value(hands[j]);
+        }
+        for(int c = 0; colours!=0; c++, colours>>>=1)
+          if((colours&1)!=0) moves[n++] = Move.hintColour(nextPlayer, p, c, hintMask(p, Move.HINT_COLOUR, c));
+        for(int v = 0; values!=0; v++, values>>>=1)
+          if((values&1)!=0) moves[n++] = Move.hintValue(nextPlayer, p, v, hintMask(p, Move.HINT_VALUE, v));
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Computes the cards matching a hint
+   * @param hintee the player receiving the hint
+   * @param type Move.HINT_COLOUR or Move.HINT_VALUE
+   * @param hint the colour ordinal or value hinted
+   * @return a mask with bit i set if the ith card of the hintee matches the hint
+   **/
+  public int hintMask(int hintee, int type, int hint){
+    int mask = 0;
+    for(int i = 0, j = hintee*handSize; i<handSize; i++, j++){
+      int c = hands[j];
+      if(c!=EMPTY && (type==Move.HINT_COLOUR?Card.colourOrdinal(c):Card.value(c))==hint) mask|=1<<i;
+    }
+    return mask;
+  }
+
+  /**
+   * Applies an action to the state.
+   * @param a the action to be performed
+   * @throws IllegalActionException if the action is not legal
+   **/
+  public void apply(Action a) throws IllegalActionException{
+    int move = Move.encode(a);
+    if(!legal(move)) throw new IllegalActionException("Invalid action!: "+a);
+    apply(move);
+  }
+
+  /**
+   * Applies an encoded move to the state, in place.
+   * The move is not checked, and must be legal.
+   * @param move the encoded move
+   **/
+  public void apply(int move){
+    switch(Move.type(move)){
+      case Move.PLAY:
+        int slot = nextPlayer*handSize+Move.card(move);
+        int c = hands[slot];
+        int colour = Card.colourOrdinal(c);
+        if(fireworks[colour]==Card.value(c)-1){
+          fireworks[colour]++;
+          score++;
+          if(fireworks[colour]==5 && hints<maxHints) hints++;
+        }
+        else{
+          discards[c]++;
+          fuse--;
+        }
+        draw(slot);
+        break;
+      case Move.DISCARD:
+        slot = nextPlayer*handSize+Move.card(move);
+        discards[hands[slot]]++;
+        draw(slot);
+        if(hints<maxHints) hints++;
+        break;
+      default:
+        hints--;
+    }
+    order++;
+    nextPlayer = nextPlayer+1==players.length?0:nextPlayer+1;
+  }
+
+  /**
+   * Applies an encoded move to the state, in place, and pushes it onto the undo stack.
+   * The move is not checked, and must be legal.
+   * No memory is allocated, except when the undo stack grows beyond any depth reached before.
+   * @param move the encoded move
+   **/
+  public void make(int move){
+    int record = hints<<7 | fuse<<12 | (finalAction==-1?1<<16:0);
+    if(!Move.isHint(move)){
+      int c = hands[nextPlayer*handSize+Move.card(move)];
+      record|=c+1;
+      if(Move.type(move)==Move.PLAY && fireworks[Card.colourOrdinal(c)]==Card.value(c)-1) record|=1<<6;
+      if(deckPos<deck.length) record|=1<<17;
+    }
+    if(undo==null) undo = new int[128];
+    else if(2*depth==undo.length) undo = java.util.Arrays.copyOf(undo, 2*undo.length);
+    undo[2*depth] = move;
+    undo[2*depth+1] = record;
+    depth++;
+    apply(move);
+  }
+
+  /**
+   * Takes back the last move made with make, restoring the state exactly as it was before the move.
+   * @throws IllegalStateException if the undo stack is empty
+   **/
+  public void unmake() throws IllegalStateException{
+    if(depth==0) throw new IllegalStateException("No move to undo");
+    depth--;
+    int move = undo[2*depth], record = undo[2*depth+1];
+    order--;
+    nextPlayer = nextPlayer==0?players.length-1:nextPlayer-1;
+    hints = (record>>>7)&31;
+    fuse = (record>>>12)&15;
+    if((record&1<<16)!=0) finalAction = -1;
+    if(Move.isHint(move)) return;
+    int c = (record&63)-1;
+    if((record&1<<17)!=0) deckPos--;
+    hands[nextPlayer*handSize+Move.card(move)] = (byte)c;
+    if((record&1<<6)!=0){
+      fireworks[Card.colourOrdinal(c)]--;
+      score--;
+    }
+    else discards[c]--;
+  }
+
+  /**@return the number of moves on the undo stack**/
+  public int getUndoDepth(){return depth;}
+
+  //replaces the card in the slot, as State.nextState does: the card that empties the deck is not kept
+  private void draw(int slot){
+    if(deckPos<deck.length) hands[slot] = deck[deckPos++];
+    if(deckPos==deck.length){
+      if(finalAction==-1) finalAction = order+players.length;
+      hands[slot] = EMPTY;
+    }
+  }
+
+  /**
+   * Tests if the game is over
+   * @return true if all fireworks have been made, the deck has run out, or a fuse has exploded.
+   **/
+  public boolean gameOver(){return order==finalAction || fuse==0 || score==maxScore;}
+
+  /**
+   * Get the current score
+   * @return the sum of the firework heights, or 0 if the fuse has exploded
+   **/
+  public int getScore(){return fuse==0?0:score;}
+
+  /**@return the rules of the game**/
+  public GameConfig getConfig(){return config;}
+
+  /**@return the names of the players**/
+  public String[] getPlayers(){return players.clone();}
+
+  /**@return the number of players in the game**/
+  public int getNumPlayers(){return players.length;}
+
+  /**@return the number of cards in each hand**/
+  public int getHandSize(){return handSize;}
+
+  /**
+   * Gets a card in a player's hand
+   * @param player the index of the player
+   * @param pos the position of the card in the hand
+   * @return the id of the card, or EMPTY
+   **/
+  public int getCard(int player, int pos){return hands[player*handSize+pos];}
+
+  //sets a card in a player's hand
+  void setCard(int player, int pos, int card){hands[player*handSize+pos] = (byte)card;}
+
+  /**
+   * Gets the height of a firework
+   * @param colour the ordinal of the firework's colour
+   * @return the value of the highest card played in the firework, or 0
+   **/
+  public int getFirework(int colour){return fireworks[colour];}
+
+  /**
+   * Gets the number of copies of a card that have been discarded
+   * @param card the id of the card
+   * @return the number of copies discarded, or incorrectly played
+   **/
+  public int getDiscards(int card){return discards[card];}
+
+  /**@return the number of cards left in the deck**/
+  public int getDeckSize(){return deck.length-deckPos;}
+
+  /**@return number of hints remaining**/
+  public int getHintTokens(){return hints;}
+
+  /**@return number of fuse tokens remaining**/
+  public int getFuseTokens(){return fuse;}
+
+  /**@return the number of moves made so far**/
+  public int getOrder(){return order;}
+
+  /**@return the index of the next player to move, or -1 if the game is over**/
+  public int getNextPlayer(){return gameOver()?-1:nextPlayer;}
+
+  /**@return the order of the final action, or -1 if the deck is not empty**/
+  public int getFinalActionIndex(){return finalAction;}
+
+  //converts an order of the deck of a game into card ids
+  private static byte[] ids(GameConfig config, int[] deckOrder){
+    if(config==null || deckOrder==null) return null;
+    Card[] cards = config.getDeck();
+    byte[] ids = new byte[deckOrder.length];
+    for(int i = 0; i<ids.length; i++) ids[i] = (byte)cards[deckOrder[i]].id();
+    return ids;
+  }
+
+  /**
+   * Returns a string describing the state of the game, in the same form as State.toString, without the last move.
+   * */
+  public String toString(){
+    Colour[] colours = config.getColours();
+    StringBuilder sb = new StringBuilder("State: ").append(order).append('\n');
+    sb.append("Players' hands:\n");
+    for(int p = 0; p<players.length; p++){
+      sb.append(players[p]).append(" (").append(p).append("): ");
+      for(int i = 0; i<handSize; i++){
+        int c = getCard(p, i);
+        sb.append(c==EMPTY?"null":Card.fromId(c)).append(' ');
+      }
+      sb.append('\n');
+    }
+    sb.append("Fireworks:\n");
+    for(Colour c: colours)
+      sb.append(c).append("  ").append(fireworks[c.ordinal()]==0?"-":c+"-"+fireworks[c.ordinal()]).append('\n');
+    sb.append("Hints: ").append(hints).append("\nFuse: ").append(fuse).append('\n');
+    return sb.toString();
+  }
+}
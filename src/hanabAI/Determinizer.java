@@ -0,0 +1,236 @@
+package hanabAI;
+
+import java.util.SplittableRandom;
+
+/**
+ * A sampler of the hidden information in a local state: the observer's hand and the order of the deck.
+ * Each sample is a global CompactState consistent with everything the observer can see
+ * (the other hands, the fireworks and the discards) and with the constraints on each card of the observer's hand.
+ * The constraints are given as masks of Card.IDS bits, with bit i set if the card could be the card with id i.
+ * By default they are read from the hints the observer has received, including the negative information of each hint.
+ * Cards are drawn slot by slot, most constrained first, from the table of unseen card counts,
+ * so a sample never has to be rejected unless the constraints are almost contradictory.
+ * This is an approximation: hands are not drawn uniformly from the hands consistent with the constraints,
+ * as each slot is drawn in proportion to the cards left, without weighing how many ways the later slots can be filled.
+ * For instance, with one copy each of cards X, Y and Z unseen, and masks {X,Y} and {X,Z} on two cards,
+ * the first card is X in one of the three consistent hands, but is sampled as X half of the time.
+ * The error is largest when hints leave few candidates for several cards, and vanishes when the masks do not overlap.
+ * The determinizer is not changed by sampling, so it may be shared between threads, each with its own random number generator.
+ **/
+public class Determinizer{
+
+  /**The mask allowing every card**/
+  public static final int ANY = (1<<Card.IDS)-1;
+  /**The number of times a sample is restarted before the constraints are declared contradictory**/
+  private static final int ATTEMPTS = 1000;
+  /**The arrays each thread builds its samples in**/
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>(){
+    protected Scratch initialValue(){return new Scratch();}
+  };
+
+  /**The observer, whose hand is sampled**/
+  private final int observer;
+  /**The state, without the observer's hand or the deck**/
+  private final CompactState template;
+  /**The number of copies of each card that the observer cannot see**/
+  private final int[] unseen;
+  /**The constraints on each card in the observer's hand**/
+  private final int[] masks;
+  /**Whether each slot of the observer's hand holds a card**/
+  private final boolean[] filled;
+  /**The slots of the observer's hand, most constrained first**/
+  private final int[] slots;
+  /**The number of cards left in the deck, and in the whole deck of the game**/
+  private final int deckSize, fullDeck;
+
+  /**
+   * Creates a determinizer for a local state, with constraints read from the hints the observer has received.
+   * Only hints within the state's history window are used.
+   * @param s the local state
+   * @throws IllegalArgumentException if the state is not local
+   **/
+  public Determinizer(State s) throws IllegalArgumentException{
+    this(s, hintMasks(s));
+  }
+
+  /**
+   * Creates a determinizer for a local state, with the given constraints.
+   * @param s the local state
+   * @param masks for each card of the observer's hand, a mask with bit i set if the card could have id i
+   * @throws IllegalArgumentException if the state is not local, or there is not one mask for each card
+   **/
+  public Determinizer(State s, int[] masks) throws IllegalArgumentException{
+    observer = s.getObserver();
+    if(observer==-1) throw new IllegalArgumentException("State must be local");
+    int handSize = s.getHand(observer).length;
+    if(masks.length!=handSize) throw new IllegalArgumentException("There must be a mask for each card");
+    this.masks = masks.clone();
+    unseen = new int[Card.IDS];
+    GameConfig config = s.getConfig();
+    for(int id = 0; id<Card.IDS; id++) unseen[id] = config.count(id);
+    for(int p = 0; p<s.getPlayers().length; p++){
+      if(p==observer) continue;
+      for(Card c: s.getHand(p)) if(c!=null) unseen[c.id()]--;
+    }
+    for(Card c: s.getDiscards()) unseen[c.id()]--;
+    for(Colour col: config.getColours()) for(Card c: s.getFirework(col)) unseen[c.id()]--;
+    filled = new boolean[handSize];
+    for(int i = 0; i<handSize; i++) filled[i] = s.hasCard(observer, i);
+    fullDeck = config.getDeckSize();
+    deckSize = s.getDeckSize();
+    template = CompactState.withoutHand(s, deckSize);
+    slots = new int[handSize];
+    for(int i = 0; i<handSize; i++) slots[i] = i;
+    for(int i = 1; i<handSize; i++)
+      for(int j = i; j>0 && candidates(slots[j])<candidates(slots[j-1]); j--){
+        int t = slots[j]; slots[j] = slots[j-1]; slots[j-1] = t;
+      }
+  }
+
+  //the number of unseen cards a slot could hold
+  private int candidates(int slot){
+    int n = 0;
+    for(int id = 0; id<Card.IDS; id++) if((masks[slot]>>>id&1)!=0) n+=unseen[id];
+    return n;
+  }
+
+  /**
+   * Reads the constraints on the observer's hand from the hints in the state's history.
+   * A hint restricts the cards it points at to the colour or value hinted, and excludes it from the other cards.
+   * Hints about a card that the observer has since played or discarded are ignored.
+   * @param s the local state
+   * @return a mask for each card of the observer's hand, with bit i set if the card could have id i
+   * @throws IllegalArgumentException if the state is not local
+   **/
+  public static int[] hintMasks(State s) throws IllegalArgumentException{
+    int observer = s.getObserver();
+    if(observer==-1) throw new IllegalArgumentException("State must be local");
+    int handSize = s.getHand(observer).length;
+    int[] masks = new int[handSize];
+    java.util.Arrays.fill(masks, ANY);
+    int replaced = 0;
+    Action a;
+    try{
+      for(int k = s.getOrder()-1; (a = s.actionAt(k))!=null; k--){
+        if(a.getPlayer()==observer && (a.getType()==ActionType.PLAY || a.getType()==ActionType.DISCARD))
+          replaced|=1<<a.getCard();
+        else if((a.getType()==ActionType.HINT_COLOUR || a.getType()==ActionType.HINT_VALUE) && a.getHintReceiver()==observer){
+          int match = a.getType()==ActionType.HINT_COLOUR?colourMask(a.getColour().ordinal()):valueMask(a.getValue());
+          int hinted = a.getHintMask();
+          for(int i = 0; i<handSize; i++)
+            if((replaced>>>i&1)==0) masks[i]&=((hinted>>>i&1)!=0?match:~match);
+        }
+      }
+    }
+    catch(IllegalActionException e){throw new IllegalArgumentException("Malformed action in history", e);}
+    return masks;
+  }
+
+  /**
+   * @param colour a colour ordinal
+   * @return the mask of the ids of the cards of that colour
+   **/
+  public static int colourMask(int colour){return 31<<(colour*5);}
+
+  /**
+   * @param value a card value
+   * @return the mask of the ids of the cards with that value
+   **/
+  public static int valueMask(int value){
+    int mask = 0;
+    for(int c = 0; c<Card.IDS/5; c++) mask|=1<<(c*5+value-1);
+    return mask;
+  }
+
+  /**
+   * Gets the constraints on the observer's hand
+   * @return for each card of the observer's hand, a mask with bit i set if the card could have id i
+   **/
+  public int[] getMasks(){return masks.clone();}
+
+  /**
+   * Gets the number of unseen copies of a card
+   * @param id the id of the card
+   * @return the number of copies in the observer's hand, the deck, or lost when the deck ran out
+   **/
+  public int getUnseen(int id){return unseen[id];}
+
+  /**
+   * Samples the observer's hand, without allocating.
+   * Slots are drawn in turn, so the hand follows the approximation described above rather than the exact posterior.
+   * @param r the source of randomness
+   * @param hand an array of the observer's hand size, to be filled with card ids, or CompactState.EMPTY for empty slots
+   * @param counts an array of length Card.IDS, left holding the unseen cards that are not in the hand
+   * @throws IllegalStateException if no hand satisfies the constraints
+   **/
+  public void sampleHand(SplittableRandom r, byte[] hand, int[] counts) throws IllegalStateException{
+    attempts:
+    for(int attempt = 0; attempt<ATTEMPTS; attempt++){
+      System.arraycopy(unseen, 0, counts, 0, unseen.length);
+      for(int slot: slots){
+        if(!filled[slot]){
+          hand[slot] = CompactState.EMPTY;
+          continue;
+        }
+        int mask = masks[slot], total = 0;
+        for(int id = 0; id<Card.IDS; id++) if((mask>>>id&1)!=0) total+=counts[id];
+        if(total==0) continue attempts;
+        int x = r.nextInt(total), id = -1;
+        while(x>=0) if((mask>>>++id&1)!=0) x-=counts[id];
+        counts[id]--;
+        hand[slot] = (byte)id;
+      }
+      return;
+    }
+    throw new IllegalStateException("No hand satisfies the constraints");
+  }
+
+  /**
+   * Samples a global state, with the observer's hand drawn from the constraints and the rest of the unseen cards shuffled into the deck.
+   * @param r the source of randomness
+   * @return a global state consistent with the observer's view
+   * @throws IllegalStateException if no hand satisfies the constraints
+   **/
+  public CompactState sample(SplittableRandom r) throws IllegalStateException{
+    CompactState s = new CompactState(template, new byte[fullDeck]);
+    sample(r, s);
+    return s;
+  }
+
+  /**
+   * Samples a global state into an existing state, without allocating once each thread has sampled a game of this size.
+   * The sample is drawn exactly as by sample(SplittableRandom), with arrays kept for each thread.
+   * @param r the source of randomness
+   * @param into a state of the same game, such as an earlier sample, which is overwritten along with its deck,
+   * so copies of it, which share its deck, must no longer be in use
+   * @throws IllegalArgumentException if into is a state of a game with other rules or another number of players
+   * @throws IllegalStateException if no hand satisfies the constraints
+   **/
+  public void sample(SplittableRandom r, CompactState into) throws IllegalArgumentException, IllegalStateException{
+    Scratch scratch = SCRATCH.get();
+    if(scratch.hand.length!=filled.length) scratch.hand = new byte[filled.length];
+    if(scratch.pool.length<fullDeck){
+      scratch.pool = new byte[fullDeck];
+      scratch.deck = new byte[fullDeck];
+    }
+    byte[] hand = scratch.hand, pool = scratch.pool, deck = scratch.deck;
+    int[] counts = scratch.counts;
+    sampleHand(r, hand, counts);
+    //deal the remaining cards into a pool, and shuffle the deck out of it
+    int n = 0;
+    for(int id = 0; id<Card.IDS; id++) for(int k = 0; k<counts[id]; k++) pool[n++] = (byte)id;
+    for(int i = 0, pos = fullDeck-deckSize; i<deckSize; i++, pos++){
+      int j = i+r.nextInt(n-i);
+      byte t = pool[j]; pool[j] = pool[i]; pool[i] = t;
+      deck[pos] = t;
+    }
+    into.copyFrom(template, deck);
+    for(int i = 0; i<hand.length; i++) into.setCard(observer, i, hand[i]);
+  }
+
+  //the arrays a sample is built in, grown to the largest game sampled
+  private static class Scratch{
+    byte[] hand = new byte[0], pool = new byte[0], deck = new byte[0];
+    final int[] counts = new int[Card.IDS];
+  }
+}
@@ -0,0 +1,446 @@
+package hanabAI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A tournament played by worker JVMs on the same machine, for line-ups whose games need more heap than one JVM can give them.
+ * The coordinator splits the games into shards of consecutive deals, and starts a worker process for each slot,
+ * with the same java and class path as the coordinator, running the main method of this class in worker mode.
+ * Each worker reads the rules and the names of the agent classes from its standard input, and then one shard at a time,
+ * plays the shard's games with fresh agents, created reflectively with their default constructors,
+ * and writes back one byte for each game, its score or -1 if an agent made an illegal move or crashed.
+ * The workers' standard error is shared with the coordinator, and anything the agents print to standard output goes there too.
+ * <p>
+ * If a worker dies, fails to start, takes longer than the shard timeout, or its pipe fails,
+ * the worker is killed, the shard it was playing is put back on the queue, and a new worker is started.
+ * If a shard timeout is set, a watchdog kills a worker whose shard is overdue, so an agent stuck in a loop cannot stall the tournament.
+ * The scores of a shard are only merged once the whole shard has been read, so a retried shard is never counted twice.
+ * A shard that fails more than the allowed number of retries is given up, and its games are counted as failures.
+ * The deck for game i is shuffled from the seed getSeed()+i, as in Tournament,
+ * so a distributed tournament deals the same cards as a Tournament with the same seed.
+ * <p>
+ * The protocol on each worker's pipes is of big-endian Data streams.
+ * The coordinator writes MAGIC, the rules as 4 bytes (suits, hint tokens, fuse tokens, and the hand size or 0 for the standard rule),
+ * the number of agents as a short, and the name of each agent class with writeUTF.
+ * The worker answers with MAGIC once the classes are loaded, or with 0 and a message if they cannot be.
+ * Each shard is then sent as the long seed of its first game and the int number of games,
+ * and answered with the same long and int followed by a byte for each game. A shard of 0 games tells the worker to exit.
+ **/
+public class DistributedTournament{
+
+  /**The first int written by each side of a worker's pipes**/
+  public static final int MAGIC = 0x48414E44;
+  /**The argument selecting worker mode in main**/
+  public static final String WORKER = "--worker";
+  /**How long a slot waits for a shard before checking whether the tournament is over, in milliseconds**/
+  private static final long POLL_MILLIS = 50;
+
+  private final String[] agents;
+  private final int workers;
+  private final long seed;
+  /**The index of the next game to be played, so repeated calls to play deal new games**/
+  private long nextGame = 0;
+  /**The statistics of the games played under the current rules, replaced when the rules change**/
+  private ScoreStatistics stats = new ScoreStatistics();
+  /**The rules of the games played**/
+  private volatile GameConfig config = GameConfig.STANDARD;
+  private volatile int shardGames = 1000;
+  private volatile int retries = 3;
+  /**The time a worker is given for each game of a shard, in milliseconds, or 0 for no limit**/
+  private volatile long gameMillis = 0;
+  private volatile String[] jvmOptions = new String[0];
+  /**The number of shards given up after too many retries, and the number of worker processes started**/
+  private final AtomicLong abandoned = new AtomicLong(), started = new AtomicLong();
+
+  /**
+   * Creates a tournament, checking that the agent classes can be loaded.
+   * @param agents the names of the classes of the agents, one for each player, in the agents package if they have no package of their own;
+   * each must implement Agent and have a public constructor with no arguments
+   * @param workers the number of worker processes
+   * @param seed the seed for the deck of the first game
+   * @throws IllegalArgumentException if there are not 2 to 5 agents, a class is not an Agent, or there are no workers
+   **/
+  public DistributedTournament(String[] agents, int workers, long seed) throws IllegalArgumentException{
+    if(agents==null || agents.length<2 || agents.length>5 || workers<1) throw new IllegalArgumentException("incorrect parameters");
+    this.agents = agents.clone();
+    for(int i = 0; i<agents.length; i++) this.agents[i] = agentClass(agents[i]).getName();
+    this.workers = workers;
+    this.seed = seed;
+  }
+
+  /**
+   * Gets the seed of the first game
+   * @return the seed used to shuffle the deck of the first game
+   **/
+  public long getSeed(){return seed;}
+
+  /**
+   * Sets the rules of the games played from now on.
+   * Scores of different variants are not comparable, so the first play under new rules starts new statistics.
+   * @param config the rules, which are GameConfig.STANDARD by default
+   **/
+  public void setConfig(GameConfig config){this.config = config;}
+
+  /**
+   * Sets the number of games in each shard, the unit of work that is retried if a worker fails
+   * @param games the number of games, which is 1000 by default
+   * @throws IllegalArgumentException if the number is not positive
+   **/
+  public void setShardGames(int games) throws IllegalArgumentException{
+    if(games<1) throw new IllegalArgumentException("Shard size must be positive");
+    shardGames = games;
+  }
+
+  /**
+   * Sets the number of times a shard is tried again after its worker fails
+   * @param retries the number of retries, which is 3 by default
+   * @throws IllegalArgumentException if the number is negative
+   **/
+  public void setRetries(int retries) throws IllegalArgumentException{
+    if(retries<0) throw new IllegalArgumentException("Retries must not be negative");
+    this.retries = retries;
+  }
+
+  /**
+   * Sets the time a worker is given for each game, after which a worker still playing its shard is killed and the shard is tried again.
+   * The timeout is per game, so a shard of n games is given n times the time, and should allow for the slowest games of the agents.
+   * @param millis the time allowed for each game of a shard, in milliseconds, or 0 for no limit, which is the default
+   * @throws IllegalArgumentException if the time is negative
+   **/
+  public void setShardTimeout(long millis) throws IllegalArgumentException{
+    if(millis<0) throw new IllegalArgumentException("Shard timeout must not be negative");
+    gameMillis = millis;
+  }
+
+  /**
+   * Sets the options given to each worker JVM from now on, such as a heap size
+   * @param options the options, placed before the class path on the command line
+   **/
+  public void setJvmOptions(String... options){jvmOptions = options.clone();}
+
+  /**
+   * Plays the given number of games on the workers, and blocks until they are complete.
+   * The worker processes are started for each call, and stopped at its end.
+   * @param games the number of games to play
+   * @return the statistics of all the games played by this tournament so far
+   * @throws IOException if a worker refuses the agents
+   * @throws InterruptedException if the thread is interrupted while waiting for the workers, which are then stopped
+   **/
+  public ScoreStatistics play(long games) throws IOException, InterruptedException{
+    long first;
+    GameConfig rules = config;
+    ScoreStatistics total;
+    synchronized(this){
+      first = nextGame;
+      nextGame+=games;
+      if(!stats.getConfig().equals(rules)) stats = new ScoreStatistics(rules);
+      total = stats;
+    }
+    LinkedBlockingQueue<Shard> queue = new LinkedBlockingQueue<Shard>();
+    for(long i = first; i<first+games; i+=shardGames) queue.add(new Shard(i, (int)Math.min(shardGames, first+games-i)));
+    Run run = new Run(queue, rules, total);
+    java.util.Timer watchdog = new java.util.Timer("DistributedTournament watchdog", true);
+    List<Thread> threads = new ArrayList<Thread>();
+    for(int w = 0; w<Math.min(workers, queue.size()); w++){
+      Thread t = new Thread(new Slot(run, watchdog), "DistributedTournament worker "+w);
+      t.setDaemon(true);
+      threads.add(t);
+      t.start();
+    }
+    try{
+      for(Thread t: threads) t.join();
+    }
+    finally{
+      watchdog.cancel();
+      run.stop();
+      for(Thread t: threads) t.interrupt();
+    }
+    if(run.error!=null) throw run.error;
+    synchronized(total){return total.copy();}
+  }
+
+  /**
+   * Gets a snapshot of the statistics of all completed shards.
+   * This method may be called from another thread while games are being played.
+   * @return a copy of the statistics so far
+   **/
+  public ScoreStatistics getStatistics(){
+    ScoreStatistics total;
+    synchronized(this){total = stats;}
+    synchronized(total){return total.copy();}
+  }
+
+  /**@return the number of shards given up after failing too many times, whose games are counted as failures**/
+  public long getAbandonedShards(){return abandoned.get();}
+
+  /**@return the number of worker processes started, including restarts**/
+  public long getWorkersStarted(){return started.get();}
+
+  //finds the class of an agent, in the agents package if the name has no package
+  private static Class<? extends Agent> agentClass(String name) throws IllegalArgumentException{
+    try{
+      return Class.forName(name.indexOf('.')<0?"agents."+name:name).asSubclass(Agent.class);
+    }
+    catch(ClassNotFoundException | ClassCastException e){throw new IllegalArgumentException("Not an agent class: "+name, e);}
+  }
+
+  /**A range of games, and the number of times it has been tried**/
+  private static class Shard{
+    final long first;
+    final int games;
+    int attempts;
+
+    Shard(long first, int games){
+      this.first = first;
+      this.games = games;
+    }
+  }
+
+  /**The shared state of one call to play**/
+  private static class Run{
+    final LinkedBlockingQueue<Shard> queue;
+    final GameConfig rules;
+    /**The statistics the shards are merged into**/
+    final ScoreStatistics total;
+    /**The number of shards not yet complete or given up**/
+    final AtomicLong remaining;
+    /**The error that stopped the run, or null**/
+    volatile IOException error;
+    /**The worker processes running**/
+    final List<Process> processes = new ArrayList<Process>();
+
+    Run(LinkedBlockingQueue<Shard> queue, GameConfig rules, ScoreStatistics total){
+      this.queue = queue;
+      this.rules = rules;
+      this.total = total;
+      remaining = new AtomicLong(queue.size());
+    }
+
+    boolean running(){return error==null && remaining.get()>0;}
+
+    synchronized void started(Process p){processes.add(p);}
+
+    synchronized void ended(Process p){processes.remove(p);}
+
+    synchronized void stop(){
+      for(Process p: processes) p.destroyForcibly();
+    }
+  }
+
+  /**A slot keeping one worker process busy, restarting it whenever it fails**/
+  private class Slot implements Runnable{
+    private final Run run;
+    private final java.util.Timer watchdog;
+    private Process process;
+    private DataOutputStream out;
+    private DataInputStream in;
+
+    Slot(Run run, java.util.Timer watchdog){
+      this.run = run;
+      this.watchdog = watchdog;
+    }
+
+    public void run(){
+      try{
+        while(run.running()){
+          Shard shard = run.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          if(shard==null) continue;
+          ScoreStatistics local = new ScoreStatistics(run.rules);
+          java.util.TimerTask deadline = null;
+          try{
+            if(process==null) start();
+            deadline = deadline(process, shard.games);
+            out.writeLong(seed+shard.first);
+            out.writeInt(shard.games);
+            out.flush();
+            if(in.readLong()!=seed+shard.first || in.readInt()!=shard.games) throw new IOException("Worker answered the wrong shard");
+            for(int i = 0; i<shard.games; i++) local.add(in.readByte());
+          }
+          catch(IOException e){
+            //the worker has died, hung, failed to start or is confused: try the shard again on a new worker, or give it up
+            if(e instanceof RefusedException) throw e;
+            kill();
+            if(++shard.attempts<=retries){
+              run.queue.add(shard);
+              continue;
+            }
+            abandoned.incrementAndGet();
+            local = new ScoreStatistics(run.rules);
+            for(int i = 0; i<shard.games; i++) local.add(-1);
+          }
+          finally{
+            if(deadline!=null) deadline.cancel();
+          }
+          synchronized(run.total){run.total.add(local);}
+          run.remaining.decrementAndGet();
+        }
+        if(process!=null) stop();
+      }
+      catch(IOException e){
+        if(run.error==null) run.error = e;
+        kill();
+      }
+      catch(InterruptedException e){kill();}
+    }
+
+    //kills the worker if it has not finished its shard in time, which fails the slot's next read
+    private java.util.TimerTask deadline(final Process worker, int games){
+      long millis = gameMillis;
+      if(millis==0) return null;
+      //the watchdog adds the delay to the clock, so the product is kept far from overflowing
+      millis = Math.min(millis, Long.MAX_VALUE/4/games)*games;
+      java.util.TimerTask task = new java.util.TimerTask(){
+        public void run(){worker.destroyForcibly();}
+      };
+      try{watchdog.schedule(task, millis);}
+      catch(IllegalStateException e){
+        //the watchdog is cancelled once play is over, so the worker is no longer needed
+        worker.destroyForcibly();
+      }
+      return task;
+    }
+
+    //starts a worker, and sends it the rules and the agents
+    private void start() throws IOException{
+      List<String> command = new ArrayList<String>();
+      command.add(System.getProperty("java.home")+java.io.File.separator+"bin"+java.io.File.separator+"java");
+      for(String option: jvmOptions) command.add(option);
+      command.add("-cp");
+      command.add(System.getProperty("java.class.path"));
+      command.add(DistributedTournament.class.getName());
+      command.add(WORKER);
+      ProcessBuilder builder = new ProcessBuilder(command);
+      builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+      process = builder.start();
+      run.started(process);
+      started.incrementAndGet();
+      out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+      in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+      GameConfig rules = run.rules;
+      out.writeInt(MAGIC);
+      out.writeByte(rules.getSuits());
+      out.writeByte(rules.getHintTokens());
+      out.writeByte(rules.getFuseTokens());
+      out.writeByte(rules.getHandRule());
+      out.writeShort(agents.length);
+      for(String name: agents) out.writeUTF(name);
+      out.flush();
+      int answer;
+      try{answer = in.readInt();}
+      catch(IOException e){
+        kill();
+        throw new IOException("Worker did not start", e);
+      }
+      if(answer!=MAGIC){
+        String message = in.readUTF();
+        kill();
+        throw new RefusedException("Worker refused the agents: "+message);
+      }
+    }
+
+    //asks the worker to exit, and waits for it: a worker that has already died is no longer needed
+    private void stop() throws InterruptedException{
+      try{
+        out.writeLong(0);
+        out.writeInt(0);
+        out.flush();
+        process.waitFor();
+        run.ended(process);
+        process = null;
+      }
+      catch(IOException e){kill();}
+    }
+
+    private void kill(){
+      if(process==null) return;
+      process.destroyForcibly();
+      run.ended(process);
+      process = null;
+    }
+  }
+
+  /**A worker's refusal of the agents, which no retry can cure**/
+  private static class RefusedException extends IOException{
+    private static final long serialVersionUID = 1L;
+
+    RefusedException(String message){super(message);}
+  }
+
+  //plays shards for a coordinator, on the pipes of this process
+  private static void work() throws IOException{
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+    //standard output belongs to the protocol, so anything the agents print goes to standard error
+    System.setOut(System.err);
+    if(in.readInt()!=MAGIC) throw new IOException("Not a coordinator");
+    GameConfig rules = new GameConfig(in.readByte(), in.readByte(), in.readByte(), in.readByte());
+    List<Class<? extends Agent>> classes = new ArrayList<Class<? extends Agent>>();
+    try{
+      for(int i = in.readShort(); i>0; i--) classes.add(agentClass(in.readUTF()));
+      for(Class<? extends Agent> c: classes) c.getConstructor();
+    }
+    catch(IllegalArgumentException | NoSuchMethodException e){
+      out.writeInt(0);
+      out.writeUTF(e.toString());
+      out.flush();
+      return;
+    }
+    out.writeInt(MAGIC);
+    out.flush();
+    for(;;){
+      long first = in.readLong();
+      int games = in.readInt();
+      if(games==0) return;
+      out.writeLong(first);
+      out.writeInt(games);
+      for(long i = first; i<first+games; i++) out.writeByte(playGame(rules, classes, i));
+      out.flush();
+    }
+  }
+
+  //plays a game with new agents of the given classes
+  private static int playGame(GameConfig rules, List<Class<? extends Agent>> classes, long seed){
+    try{
+      Agent[] players = new Agent[classes.size()];
+      for(int i = 0; i<players.length; i++) players[i] = classes.get(i).getConstructor().newInstance();
+      return new Hanabi(rules, players, seed).play();
+    }
+    catch(RuntimeException | ReflectiveOperationException e){return -1;}
+  }
+
+  /**
+   * This main method runs a tournament of three basic agents on one worker process for each core,
+   * or runs as a worker if the first argument is WORKER.
+   * The number of games may be given as the first argument, and the names of the agent classes as the rest.
+   **/
+  public static void main(String[] args) throws IOException, InterruptedException{
+    if(args.length>0 && args[0].equals(WORKER)){
+      work();
+      return;
+    }
+    if(args.length==2){
+      System.err.println("Usage: java hanabAI.DistributedTournament [games [agent agent...]], with 2 to 5 agents");
+      System.exit(1);
+    }
+    long games = args.length>0?Long.parseLong(args[0]):10000;
+    String[] agents = args.length>2?java.util.Arrays.copyOfRange(args, 1, args.length):new String[]{"BasicAgent", "BasicAgent", "BasicAgent"};
+    DistributedTournament t = new DistributedTournament(agents, Runtime.getRuntime().availableProcessors(), new java.util.SplittableRandom().nextLong());
+    long start = System.nanoTime();
+    ScoreStatistics result = t.play(games);
+    double seconds = (System.nanoTime()-start)/1e9;
+    System.out.print(result);
+    System.out.printf("%d games in %.2fs (%.0f games/s) on %d worker processes%n", games, seconds, games/seconds, t.getWorkersStarted());
+  }
+}
@@ -0,0 +1,108 @@
+package hanabAI;
+
+/**
+ * Encodes what a player can see of a game into a fixed-length vector of bytes, for training and running learned policies.
+ * Players are numbered relative to the observer, so the observer is player 0, the next player to move after the observer is player 1, and so on.
+ * The vector has SIZE bytes, laid out as follows (unused players and slots are padded):
+ * <ul>
+ * <li>0-7: the number of players, the hand size, the hint tokens, the fuse tokens, the cards left in the deck, the score,
+ * the number of moves left if the deck has run out or -1, and the number of suits</li>
+ * <li>8-27: the id of each card in the other players' hands, 5 slots for each of players 1 to 4, or -1 for an empty or unused slot</li>
+ * <li>28-33: the height of the firework of each colour, including the rainbow suit of variant games</li>
+ * <li>34-63: the number of copies of each card id discarded</li>
+ * <li>64-163: what each player knows of each card in their hand, as the big-endian int masks of a BeliefTracker, 5 slots for each of players 0 to 4</li>
+ * <li>164-179: the last 4 moves, most recent first, as big-endian ints in the relative encoding of relativeMove, or -1</li>
+ * </ul>
+ **/
+public final class FeatureEncoder{
+
+  /**The number of bytes in a feature vector**/
+  public static final int SIZE = 180;
+  /**The number of previous moves in a feature vector**/
+  public static final int HISTORY = 4;
+
+  private static final int HANDS = 8, FIREWORKS = 28, DISCARDS = 34, MASKS = 64, MOVES = 164;
+
+  private FeatureEncoder(){}
+
+  /**
+   * Writes the features of a local state.
+   * @param s a local state
+   * @param beliefs a tracker that has been updated to the state
+   * @param out the array to write to
+   * @param offset the position of the first byte of the vector in the array
+   * @throws IllegalArgumentException if the state is not local
+   **/
+  public static void encode(State s, BeliefTracker beliefs, byte[] out, int offset) throws IllegalArgumentException{
+    int observer = s.getObserver();
+    if(observer==-1) throw new IllegalArgumentException("State must be local");
+    int n = s.getPlayers().length, handSize = s.handSize();
+    java.util.Arrays.fill(out, offset, offset+SIZE, (byte)0);
+    out[offset] = (byte)n;
+    out[offset+1] = (byte)handSize;
+    out[offset+2] = (byte)s.getHintTokens();
+    out[offset+3] = (byte)s.getFuseTokens();
+    out[offset+4] = (byte)s.getDeckSize();
+    out[offset+5] = (byte)s.getScore();
+    out[offset+6] = (byte)(s.getFinalActionIndex()==-1?-1:s.getFinalActionIndex()-s.getOrder());
+    out[offset+7] = (byte)s.getConfig().getSuits();
+    java.util.Arrays.fill(out, offset+HANDS, offset+FIREWORKS, (byte)-1);
+    for(int r = 1; r<n; r++){
+      int p = (observer+r)%n;
+      for(int i = 0; i<handSize; i++){
+        Card c = s.cardAt(p, i);
+        if(c!=null) out[offset+HANDS+(r-1)*5+i] = (byte)c.id();
+      }
+    }
+    for(Colour c: s.getConfig().getColours()) out[offset+FIREWORKS+c.ordinal()] = (byte)s.fireworkHeight(c);
+    //a card is in its firework if its value is no more than the firework's height, and every other copy removed is discarded
+    for(int id = 0; id<Card.IDS; id++)
+      out[offset+DISCARDS+id] = (byte)(beliefs.getRemoved(id)-(Card.value(id)<=out[offset+FIREWORKS+Card.colourOrdinal(id)]?1:0));
+    for(int r = 0; r<n; r++){
+      int p = (observer+r)%n;
+      for(int i = 0; i<handSize; i++) putInt(out, offset+MASKS+(r*5+i)*4, beliefs.getMask(p, i));
+    }
+    for(int k = 0; k<HISTORY; k++){
+      Action a = s.actionAt(s.getOrder()-1-k);
+      int move = -1;
+      if(a!=null){
+        try{move = relativeMove(Move.encode(a), observer, n);}
+        catch(IllegalActionException e){throw new IllegalArgumentException("Malformed action in history", e);}
+      }
+      putInt(out, offset+MOVES+4*k, move);
+    }
+  }
+
+  /**
+   * Re-encodes a move with its players numbered relative to an observer
+   * @param move the encoded move (see Move)
+   * @param observer the index of the observer
+   * @param numPlayers the number of players in the game
+   * @return the move with the player and the hintee replaced by their positions after the observer
+   **/
+  public static int relativeMove(int move, int observer, int numPlayers){
+    int player = (Move.player(move)-observer+numPlayers)%numPlayers;
+    int hintee = Move.isHint(move)?(Move.hintee(move)-observer+numPlayers)%numPlayers:0;
+    return (move&~(7<<2|7<<8)) | player<<2 | hintee<<8;
+  }
+
+  /**
+   * Converts a move in the relative encoding back to the absolute encoding
+   * @param move the move in the relative encoding
+   * @param observer the index of the observer
+   * @param numPlayers the number of players in the game
+   * @return the move with the player and hintee replaced by their indices in the game
+   **/
+  public static int absoluteMove(int move, int observer, int numPlayers){
+    int player = (Move.player(move)+observer)%numPlayers;
+    int hintee = Move.isHint(move)?(Move.hintee(move)+observer)%numPlayers:0;
+    return (move&~(7<<2|7<<8)) | player<<2 | hintee<<8;
+  }
+
+  private static void putInt(byte[] out, int pos, int v){
+    out[pos] = (byte)(v>>>24);
+    out[pos+1] = (byte)(v>>>16);
+    out[pos+2] = (byte)(v>>>8);
+    out[pos+3] = (byte)v;
+  }
+}
@@ -0,0 +1,187 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Stack;
+
+/**
+ * A reader for archives written by GameArchiveWriter.
+ * The reader is a cursor over the games of an archive: next moves to the following game,
+ * and the fields of the current game are read directly from the archive when they are asked for,
+ * so scanning the scores of an archive does not decode the names, deals or moves.
+ * Files are memory mapped rather than read, so an archive larger than memory can be scanned.
+ * A reader is not thread safe, but several readers may be opened on the same file.
+ **/
+public class GameArchiveReader{
+
+  private final ByteBuffer buffer;
+  /**The position of the current game, after its length, or -1 before the first game**/
+  private int game = -1;
+  /**The position of the first move, and the position of the deal, of the current game**/
+  private int movesAt, dealAt;
+
+  /**
+   * Opens an archive file, by mapping it into memory.
+   * @param file the archive
+   * @throws IOException if the file cannot be read, or is too large to map
+   **/
+  public GameArchiveReader(Path file) throws IOException{
+    try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+      if(ch.size()>Integer.MAX_VALUE) throw new IOException("Archive is too large to map");
+      buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+  }
+
+  /**
+   * Reads an archive held in a buffer.
+   * @param archive a buffer holding the archive between its position and limit, which is not changed by the reader
+   **/
+  public GameArchiveReader(ByteBuffer archive){
+    buffer = archive.slice();
+  }
+
+  /**
+   * Moves to the next game in the archive.
+   * @return true if there is another game, false at the end of the archive
+   * @throws IOException if the next game is incomplete or malformed
+   **/
+  public boolean next() throws IOException{
+    int at = game==-1?0:dealAt+dealSize();
+    if(at==buffer.limit()) return false;
+    if(buffer.limit()-at<4) throw new IOException("Truncated game archive");
+    int length = buffer.getInt(at), start = at+4;
+    if(length<5 || length>buffer.limit()-start) throw new IOException("Truncated game archive");
+    int pos = start+5;
+    int players = buffer.get(start+1);
+    if(players<2 || players>5) throw new IOException("Malformed game archive");
+    for(int p = 0; p<players; p++){
+      if(pos+2>start+length) throw new IOException("Malformed game archive");
+      pos+=2+(buffer.getShort(pos)&0xFFFF);
+    }
+    game = start;
+    movesAt = pos;
+    dealAt = pos+2*getMoveCount()+(isVariant()?4:0);
+    if(dealAt>start+length) throw new IOException("Malformed game archive");
+    try{
+      if(dealAt+dealSize()!=start+length) throw new IOException("Malformed game archive");
+    }
+    catch(IllegalArgumentException e){throw new IOException("Malformed game archive", e);}
+    return true;
+  }
+
+  //the number of bytes in the deal of the current game
+  private int dealSize(){return isSeeded()?8:getConfig().getDeckSize();}
+
+  /**
+   * Gets the rules of the current game
+   * @return the rules, which are GameConfig.STANDARD unless the game is a variant
+   * @throws IllegalArgumentException if the rules stored are out of range, which means the archive is corrupt
+   **/
+  public GameConfig getConfig() throws IllegalArgumentException{
+    if(!isVariant()) return GameConfig.STANDARD;
+    int pos = dealAt-4;
+    GameConfig c = new GameConfig(buffer.get(pos), buffer.get(pos+1), buffer.get(pos+2), buffer.get(pos+3));
+    return c.equals(GameConfig.STANDARD)?GameConfig.STANDARD:c;
+  }
+
+  /**
+   * Moves back to before the first game of the archive.
+   **/
+  public void rewind(){game = -1;}
+
+  /**@return true if the deal of the current game is stored as a seed**/
+  public boolean isSeeded(){return (buffer.get(game)&GameArchiveWriter.SEEDED)!=0;}
+
+  /**@return true if the current game is a variant, with rules other than GameConfig.STANDARD**/
+  public boolean isVariant(){return (buffer.get(game)&GameArchiveWriter.VARIANT)!=0;}
+
+  /**@return the number of players in the current game**/
+  public int getNumPlayers(){return buffer.get(game+1);}
+
+  /**@return the score of the current game, or -1 if a player made an illegal move**/
+  public int getScore(){return buffer.get(game+2);}
+
+  /**@return the number of moves in the current game**/
+  public int getMoveCount(){return buffer.getShort(game+3)&0xFFFF;}
+
+  /**
+   * Gets the name of a player in the current game
+   * @param player the index of the player
+   * @return the player's name
+   * @throws ArrayIndexOutOfBoundsException if there is no such player
+   **/
+  public String getPlayer(int player) throws ArrayIndexOutOfBoundsException{
+    if(player<0 || player>=getNumPlayers()) throw new ArrayIndexOutOfBoundsException();
+    int pos = game+5;
+    for(int p = 0; p<player; p++) pos+=2+(buffer.getShort(pos)&0xFFFF);
+    byte[] b = new byte[buffer.getShort(pos)&0xFFFF];
+    for(int i = 0; i<b.length; i++) b[i] = buffer.get(pos+2+i);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets a move of the current game, without its hint mask
+   * @param k the order of the state the move was made from
+   * @return the encoded move (see Move)
+   * @throws ArrayIndexOutOfBoundsException if there is no such move
+   **/
+  public int getMove(int k) throws ArrayIndexOutOfBoundsException{
+    if(k<0 || k>=getMoveCount()) throw new ArrayIndexOutOfBoundsException();
+    return buffer.getShort(movesAt+2*k)&0xFFFF;
+  }
+
+  /**
+   * Gets the seed of the current game
+   * @return the seed the deck was shuffled from with GameConfig.shuffledDeck
+   * @throws IllegalStateException if the deal is stored as a deck order
+   **/
+  public long getSeed() throws IllegalStateException{
+    if(!isSeeded()) throw new IllegalStateException("The deal is not stored as a seed");
+    return buffer.getLong(dealAt);
+  }
+
+  /**
+   * Gets the deck of the current game
+   * @return a stack of the cards of the deck, with the first card to be drawn on top
+   **/
+  public Stack<Card> getDeck(){
+    GameConfig config = getConfig();
+    if(isSeeded()) return config.shuffledDeck(getSeed());
+    Stack<Card> deck = new Stack<Card>();
+    for(int i = config.getDeckSize()-1; i>=0; i--) deck.push(Card.fromId(buffer.get(dealAt+i)));
+    return deck;
+  }
+
+  /**
+   * Replays the current game through State.nextState
+   * @return the final state of the game, whose score is the score recorded
+   * @throws IllegalActionException if a recorded move is not legal in the replay, which means the archive is corrupt
+   **/
+  public State replay() throws IllegalActionException{
+    int players = getNumPlayers();
+    String[] names = new String[players];
+    for(int p = 0; p<players; p++) names[p] = getPlayer(p);
+    Stack<Card> deck = getDeck();
+    State s = new State(getConfig(), names, deck, History.UNBOUNDED);
+    for(int k = 0, n = getMoveCount(); k<n; k++){
+      int move = getMove(k);
+      int hintee = Move.isHint(move)?Move.hintee(move):Move.player(move);
+      if(hintee>=players || Move.player(move)>=players) throw new IllegalActionException("Malformed move");
+      Card[] hand = s.getHand(hintee);
+      if(Move.isHint(move)){
+        int mask = 0;
+        for(int i = 0; i<hand.length; i++){
+          Card c = hand[i];
+          if(c!=null && (Move.type(move)==Move.HINT_COLOUR?c.getColour().ordinal():c.getValue())==Move.hint(move)) mask|=1<<i;
+        }
+        move = Move.withHintMask(move, mask);
+      }
+      s = s.nextState(Move.toAction(move, names[Move.player(move)], hand.length));
+    }
+    return s;
+  }
+}
@@ -0,0 +1,170 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A listener writing each game it sees to an archive, in a compact binary format that can be replayed by GameArchiveReader.
+ * Each game is stored as a block of:
+ * <ul>
+ * <li>an int, the number of bytes in the rest of the block</li>
+ * <li>a byte of flags, with bit 0 set if the deal is stored as a seed, and bit 1 set if the game is a variant</li>
+ * <li>a byte, the number of players</li>
+ * <li>a byte, the score, or -1 if a player made an illegal move</li>
+ * <li>a short, the number of moves</li>
+ * <li>the name of each player, as a short length followed by the UTF-8 bytes</li>
+ * <li>a short for each move, the move without its hint mask (see Move), which is recovered from the state on replay</li>
+ * <li>for a variant, the rules (see GameConfig): a byte each for the suits, hint tokens, fuse tokens and hand size (0 for the standard rule)</li>
+ * <li>the deal: either the long seed for GameConfig.shuffledDeck, or the id of each card of the deck in the order they are drawn</li>
+ * </ul>
+ * The deck order is rebuilt from the cards dealt and drawn.
+ * Cards that are never drawn do not change the game, so they are stored in order of their ids.
+ * An illegal move is not stored, so the replay of a game with a score of -1 stops at the state the move was made from.
+ * Games are buffered, and only written to the channel once they are over,
+ * so writers in different threads may share a channel without their games being interleaved.
+ * The buffer is written out when it is nearly full and when flush is called, which must be done after the last game.
+ **/
+public class GameArchiveWriter implements GameListener, java.io.Flushable{
+
+  /**The flag for deals stored as a seed**/
+  static final int SEEDED = 1;
+  /**The flag for games with rules other than GameConfig.STANDARD**/
+  static final int VARIANT = 2;
+  /**The number of buffered bytes at which the buffer is written out at the end of a game**/
+  private static final int FLUSH = 1<<15;
+
+  private final WritableByteChannel channel;
+  private ByteBuffer buffer = ByteBuffer.allocate(FLUSH*2);
+  /**The position of the start of the current game in the buffer**/
+  private int gameStart = 0;
+  /**The number of moves in the current game**/
+  private int moves;
+  /**The cards dealt and drawn in the current game, by id**/
+  private byte[] deck = new byte[50];
+  private int drawn;
+  /**The seed of the next game, if it has been given**/
+  private long seed;
+  private boolean seeded = false;
+
+  /**
+   * Creates a writer for the given channel.
+   * @param channel the channel the archive is written to, which may be shared with other writers
+   **/
+  public GameArchiveWriter(WritableByteChannel channel){
+    this.channel = channel;
+  }
+
+  /**
+   * Stores the deal of the next game as a seed rather than as the order of the deck.
+   * The seed is forgotten once the game is over.
+   * @param seed the seed the deck of the next game was shuffled from with GameConfig.shuffledDeck
+   **/
+  public void setSeed(long seed){
+    this.seed = seed;
+    seeded = true;
+  }
+
+  /**
+   * Starts the block of a game.
+   * @param s the initial state of the game
+   **/
+  public void gameStarted(State s){
+    buffer.position(gameStart);
+    String[] players = s.getPlayers();
+    ensure(9);
+    buffer.position(gameStart+9);
+    for(String name: players){
+      byte[] b = name.getBytes(StandardCharsets.UTF_8);
+      ensure(2+b.length);
+      buffer.putShort((short)b.length).put(b);
+    }
+    moves = 0;
+    drawn = 0;
+    if(deck.length!=s.getConfig().getDeckSize()) deck = new byte[s.getConfig().getDeckSize()];
+    for(int p = 0; p<players.length; p++)
+      for(Card c: s.getHand(p)) deck[drawn++] = (byte)c.id();
+  }
+
+  /**
+   * Adds a move to the block of the current game.
+   * @param a the action taken
+   * @param s the state after the action
+   **/
+  public void moveMade(Action a, State s){
+    int move;
+    try{move = Move.encode(a);}
+    catch(IllegalActionException e){throw new IllegalArgumentException("Malformed action", e);}
+    if(!Move.isHint(move)){
+      Card c = s.cardAt(a.getPlayer(), Move.card(move));
+      if(c!=null) deck[drawn++] = (byte)c.id();
+    }
+    ensure(2);
+    buffer.putShort((short)move);
+    moves++;
+  }
+
+  /**
+   * Completes the block of the current game, and writes out the buffer if it is nearly full.
+   * @param s the final state of the game
+   * @param score the score of the game
+   * @throws UncheckedIOException if the channel cannot be written to
+   **/
+  public void gameEnded(State s, int score){
+    GameConfig config = s.getConfig();
+    boolean variant = !config.equals(GameConfig.STANDARD);
+    if(variant){
+      ensure(4);
+      buffer.put((byte)config.getSuits()).put((byte)config.getHintTokens()).put((byte)config.getFuseTokens());
+      buffer.put((byte)config.getHandRule());
+    }
+    if(seeded){
+      ensure(8);
+      buffer.putLong(seed);
+    }
+    else{
+      //the cards never drawn, and the card lost when the deck runs out, follow the cards drawn in order of id
+      int[] left = new int[Card.IDS];
+      for(int id = 0; id<Card.IDS; id++) left[id] = config.count(id);
+      for(int i = 0; i<drawn; i++) left[deck[i]]--;
+      for(int id = 0; id<Card.IDS; id++) while(left[id]-->0) deck[drawn++] = (byte)id;
+      ensure(deck.length);
+      buffer.put(deck);
+    }
+    int end = buffer.position();
+    buffer.putInt(gameStart, end-gameStart-4);
+    buffer.put(gameStart+4, (byte)((seeded?SEEDED:0) | (variant?VARIANT:0)));
+    buffer.put(gameStart+5, (byte)s.getPlayers().length);
+    buffer.put(gameStart+6, (byte)score);
+    buffer.putShort(gameStart+7, (short)moves);
+    seeded = false;
+    gameStart = end;
+    if(gameStart>=FLUSH){
+      try{flush();}
+      catch(IOException e){throw new UncheckedIOException(e);}
+    }
+  }
+
+  /**
+   * Writes every complete game in the buffer to the channel.
+   * @throws IOException if the channel cannot be written to
+   **/
+  public void flush() throws IOException{
+    buffer.position(gameStart).flip();
+    synchronized(channel){
+      while(buffer.hasRemaining()) channel.write(buffer);
+    }
+    buffer.clear();
+    gameStart = 0;
+  }
+
+  //makes room for n more bytes, growing the buffer for games too long to fit
+  private void ensure(int n){
+    if(buffer.remaining()>=n) return;
+    ByteBuffer b = ByteBuffer.allocate(Math.max(buffer.capacity()*2, buffer.position()+n));
+    buffer.flip();
+    buffer = b.put(buffer);
+  }
+}
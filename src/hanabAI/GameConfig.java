@@ -0,0 +1,147 @@
+package hanabAI;
+
+import java.util.SplittableRandom;
+import java.util.Stack;
+
+/**
+ * The rules of a variant of Hanabi: the number of suits, the number of hint and fuse tokens, and the size of the hands.
+ * Suits are the first colours of Colour, so a game with 6 suits adds the rainbow suit to the standard deck.
+ * Each suit has 10 cards, three 1s, two each of 2s, 3s and 4s, and one 5, and the rainbow suit is an ordinary sixth colour.
+ * A configuration is immutable, and is read once when a game is created:
+ * the states of the game keep the limits they need in their own fields, so the rules cost no more than the standard game.
+ **/
+public final class GameConfig{
+
+  /**The standard game: 5 suits, 8 hint tokens and 3 fuse tokens, with hands of 5 cards for 2 or 3 players and 4 cards for 4 or 5 players**/
+  public static final GameConfig STANDARD = new GameConfig(5, 8, 3, 0);
+  /**The standard game with the rainbow suit added**/
+  public static final GameConfig RAINBOW = new GameConfig(6, 8, 3, 0);
+
+  private final int suits, hintTokens, fuseTokens, handSize;
+  /**The cards of the deck, ordered by colour and value**/
+  private final Card[] deck;
+
+  /**
+   * Creates a variant of the game
+   * @param suits the number of suits, from 1 to 6
+   * @param hintTokens the number of hint tokens, at the start of the game and at most, from 1 to 31
+   * @param fuseTokens the number of fuse tokens, from 1 to 15
+   * @param handSize the number of cards in each hand, from 2 to 5, or 0 for the standard rule
+   * (a player with a hand of one card could be left with no legal move once the deck runs out)
+   * @throws IllegalArgumentException if a parameter is out of range
+   **/
+  public GameConfig(int suits, int hintTokens, int fuseTokens, int handSize) throws IllegalArgumentException{
+    if(suits<1 || suits>Colour.values().length || hintTokens<1 || hintTokens>31 || fuseTokens<1 || fuseTokens>15 || handSize<0 || handSize==1 || handSize>5)
+      throw new IllegalArgumentException("incorrect parameters");
+    this.suits = suits;
+    this.hintTokens = hintTokens;
+    this.fuseTokens = fuseTokens;
+    this.handSize = handSize;
+    deck = new Card[10*suits];
+    int n = 0;
+    for(int c = 0; c<suits; c++)
+      for(int v = 1; v<=5; v++)
+        for(int k = 0; k<Card.count(c*5+v-1); k++) deck[n++] = Card.of(Colour.values()[c], v);
+  }
+
+  /**@return the number of suits**/
+  public int getSuits(){return suits;}
+
+  /**@return the colours of the suits in the game**/
+  public Colour[] getColours(){return java.util.Arrays.copyOf(Colour.values(), suits);}
+
+  /**@return the number of hint tokens at the start of the game, which is also the most there can be**/
+  public int getHintTokens(){return hintTokens;}
+
+  /**@return the number of fuse tokens at the start of the game**/
+  public int getFuseTokens(){return fuseTokens;}
+
+  /**
+   * Gets the number of cards in each hand
+   * @param players the number of players in the game
+   * @return the hand size of the variant, or by the standard rule, 5 cards for 2 or 3 players and 4 for more
+   **/
+  public int getHandSize(int players){return handSize!=0?handSize:players>3?4:5;}
+
+  /**@return the hand size of the variant, or 0 for the standard rule, as passed to the constructor**/
+  int getHandRule(){return handSize;}
+
+  /**@return the number of cards in the deck**/
+  public int getDeckSize(){return deck.length;}
+
+  /**@return the highest score, when every firework is complete**/
+  public int getMaxScore(){return 5*suits;}
+
+  /**@return the number of card ids in the game, and one more than the largest, as ids are ordered by colour**/
+  public int getIds(){return 5*suits;}
+
+  /**@return a mask of the card ids in the game, as used by Determinizer and BeliefTracker**/
+  public int getCardMask(){return (1<<5*suits)-1;}
+
+  /**
+   * Gets the numerosity of a card in the game
+   * @param id the id of the card
+   * @return the number of times the card appears in the deck, which is 0 for cards of suits not in the game
+   **/
+  public int count(int id){return id<5*suits?Card.count(id):0;}
+
+  /**
+   * Gives a new instance of the complete deck, ordered by colour and value
+   * @return an array of the cards of the game
+   **/
+  public Card[] getDeck(){return deck.clone();}
+
+  /**
+   * Gives a new instance of a shuffled deck, shuffled with a freshly seeded random number generator
+   * @return a stack of the cards of the game in random order
+   **/
+  public Stack<Card> shuffledDeck(){return toDeck(shuffledOrder(new SplittableRandom()));}
+
+  /**
+   * Gives a new instance of a shuffled deck.
+   * The same seed always gives the same deck, and the standard game gives the same deck as Card.shuffledDeck.
+   * @param seed the seed for the shuffle
+   * @return a stack of the cards of the game in random order
+   **/
+  public Stack<Card> shuffledDeck(long seed){return toDeck(shuffledOrder(new SplittableRandom(seed)));}
+
+  /**
+   * Gives a random order of the deck.
+   * @param r the source of randomness for the shuffle
+   * @return an array containing each index of getDeck() exactly once, with the first card to be drawn at index 0
+   **/
+  public int[] shuffledOrder(SplittableRandom r){
+    int[] order = new int[deck.length];
+    for(int i = 0; i<order.length; i++) order[i] = i;
+    Card.shuffle(order, r);
+    return order;
+  }
+
+  /**
+   * Builds a deck from an order of the cards.
+   * @param order an array of indices of getDeck(), with the first card to be drawn at index 0
+   * @return a stack of cards, with the card at order[0] on top
+   * @throws ArrayIndexOutOfBoundsException if an index is not a position in the deck
+   **/
+  public Stack<Card> toDeck(int[] order){
+    Stack<Card> shuffle = new Stack<Card>();
+    for(int i = order.length-1; i>=0; i--) shuffle.push(deck[order[i]]);
+    return shuffle;
+  }
+
+  /**
+   * Configurations are equal if they have the same rules.
+   **/
+  public boolean equals(Object o){
+    if(!(o instanceof GameConfig)) return false;
+    GameConfig c = (GameConfig)o;
+    return c.suits==suits && c.hintTokens==hintTokens && c.fuseTokens==fuseTokens && c.handSize==handSize;
+  }
+
+  public int hashCode(){return suits | hintTokens<<3 | fuseTokens<<8 | handSize<<12;}
+
+  /**@return a description of the rules**/
+  public String toString(){
+    return suits+" suits, "+hintTokens+" hints, "+fuseTokens+" fuses, "+(handSize==0?"standard hands":"hands of "+handSize);
+  }
+}
@@ -0,0 +1,81 @@
+package hanabAI;
+
+/**
+ * An observer of the progress of a game of Hanabi.
+ * A listener is attached to a game with Hanabi.setListener, and is told of each move as the game is played.
+ * The states passed to the listener are global, so the listener sees every hand.
+ * Every method does nothing by default, so a listener need only implement the events it uses.
+ * A game without a listener pays only a null check per move.
+ **/
+public interface GameListener{
+
+  /**
+   * Called before the first move of a game
+   * @param s the initial state of the game
+   **/
+  default void gameStarted(State s){}
+
+  /**
+   * Tells the game whether to time each call to doAction for this listener, which costs two reads of the clock per move.
+   * Timing a game for a listener does not impose a time budget.
+   * @return true if the listener uses actionTimed, false by default
+   **/
+  default boolean isTimed(){return false;}
+
+  /**
+   * Called after each call to an agent's doAction, when the game is timed.
+   * Games are timed when they have a listener whose isTimed returns true, or a time budget.
+   * @param s the state before the move, with no hidden hand
+   * @param player the index of the player who chose the move
+   * @param nanos the time taken by doAction, in nanoseconds
+   **/
+  default void actionTimed(State s, int player, long nanos){}
+
+  /**
+   * Called when an agent goes over its time budget for a move or for the game, before its move is replaced or the game forfeited.
+   * @param s the state before the move, with no hidden hand
+   * @param player the index of the player over budget
+   * @param nanos the time taken by the move, in nanoseconds
+   * @param forfeit true if the game is forfeited, false if the move is replaced
+   **/
+  default void budgetExceeded(State s, int player, long nanos, boolean forfeit){}
+
+  /**
+   * Called after each move of a game
+   * @param a the action taken
+   * @param s the state after the action
+   **/
+  default void moveMade(Action a, State s){}
+
+  /**
+   * Called when a game is over
+   * @param s the final state of the game
+   * @param score the score of the game, or -1 if a player made an illegal move or the game crashed
+   **/
+  default void gameEnded(State s, int score){}
+
+  /**
+   * Combines listeners into one, which passes each event to every listener in turn.
+   * @param listeners the listeners, which may include nulls
+   * @return a listener telling each of the listeners of every event, or null if there are none
+   **/
+  static GameListener all(GameListener... listeners){
+    GameListener[] present = new GameListener[listeners.length];
+    int n = 0;
+    for(GameListener l: listeners) if(l!=null) present[n++] = l;
+    if(n==0) return null;
+    if(n==1) return present[0];
+    final GameListener[] ls = java.util.Arrays.copyOf(present, n);
+    return new GameListener(){
+      public boolean isTimed(){
+        for(GameListener l: ls) if(l.isTimed()) return true;
+        return false;
+      }
+      public void gameStarted(State s){for(GameListener l: ls) l.gameStarted(s);}
+      public void actionTimed(State s, int player, long nanos){for(GameListener l: ls) l.actionTimed(s, player, nanos);}
+      public void budgetExceeded(State s, int player, long nanos, boolean forfeit){for(GameListener l: ls) l.budgetExceeded(s, player, nanos, forfeit);}
+      public void moveMade(Action a, State s){for(GameListener l: ls) l.moveMade(a, s);}
+      public void gameEnded(State s, int score){for(GameListener l: ls) l.gameEnded(s, score);}
+    };
+  }
+}
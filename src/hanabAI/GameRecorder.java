@@ -0,0 +1,204 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A listener writing a compact binary record of each game to a channel.
+ * A game is written as a header with the players' names and the initial hands,
+ * one eight byte record per move (the encoded move, the card drawn, and the hint and fuse tokens after the move),
+ * and a trailer with the score.
+ * Records are buffered, and a game is only written to the channel once it is over,
+ * so recorders in different threads may share a channel without their games being interleaved.
+ * The buffer is written out when it is nearly full and when flush is called, which must be done after the last game.
+ * A recorder may be reused for any number of games, but must only be attached to one game at a time.
+ * The records can be turned back into a readable description of each game with render.
+ **/
+public class GameRecorder implements GameListener, java.io.Flushable{
+
+  /**The tags at the start of each record**/
+  private static final byte GAME = 'G', MOVE = 'M', END = 'E';
+  /**The number of buffered bytes at which the buffer is written out at the end of a game**/
+  private static final int FLUSH = 1<<15;
+
+  private final WritableByteChannel channel;
+  private ByteBuffer buffer = ByteBuffer.allocate(FLUSH*2);
+  /**The position of the start of the current game in the buffer**/
+  private int gameStart = 0;
+
+  /**
+   * Creates a recorder writing to the given channel.
+   * @param channel the channel the records are written to, which may be shared with other recorders
+   **/
+  public GameRecorder(WritableByteChannel channel){
+    this.channel = channel;
+  }
+
+  /**
+   * Writes the header of a game.
+   * @param s the initial state of the game
+   **/
+  public void gameStarted(State s){
+    buffer.position(gameStart);
+    String[] players = s.getPlayers();
+    int handSize = s.getHand(0).length;
+    ensure(3+players.length*(handSize+2));
+    buffer.put(GAME).put((byte)players.length).put((byte)handSize);
+    for(String name: players){
+      byte[] b = name.getBytes(StandardCharsets.UTF_8);
+      ensure(2+b.length);
+      buffer.putShort((short)b.length).put(b);
+    }
+    for(int p = 0; p<players.length; p++)
+      for(int i = 0; i<handSize; i++) buffer.put(id(s.cardAt(p, i)));
+  }
+
+  /**
+   * Writes the record of a move.
+   * @param a the action taken
+   * @param s the state after the action
+   **/
+  public void moveMade(Action a, State s){
+    int move;
+    try{move = Move.encode(a);}
+    catch(IllegalActionException e){throw new IllegalArgumentException("Malformed action", e);}
+    byte drawn = Move.isHint(move)?-1:id(s.cardAt(a.getPlayer(), Move.card(move)));
+    ensure(8);
+    buffer.put(MOVE).putInt(move).put(drawn).put((byte)s.getHintTokens()).put((byte)s.getFuseTokens());
+  }
+
+  /**
+   * Writes the trailer of a game, and writes out the buffer if it is nearly full.
+   * @param s the final state of the game
+   * @param score the score of the game
+   * @throws UncheckedIOException if the channel cannot be written to
+   **/
+  public void gameEnded(State s, int score){
+    ensure(2);
+    buffer.put(END).put((byte)score);
+    gameStart = buffer.position();
+    if(gameStart>=FLUSH){
+      try{flush();}
+      catch(IOException e){throw new UncheckedIOException(e);}
+    }
+  }
+
+  /**
+   * Writes every complete game in the buffer to the channel.
+   * @throws IOException if the channel cannot be written to
+   **/
+  public void flush() throws IOException{
+    buffer.position(gameStart).flip();
+    synchronized(channel){
+      while(buffer.hasRemaining()) channel.write(buffer);
+    }
+    buffer.clear();
+    gameStart = 0;
+  }
+
+  //makes room for n more bytes, growing the buffer for games too long to fit
+  private void ensure(int n){
+    if(buffer.remaining()>=n) return;
+    ByteBuffer b = ByteBuffer.allocate(Math.max(buffer.capacity()*2, buffer.position()+n));
+    buffer.flip();
+    buffer = b.put(buffer);
+  }
+
+  private static byte id(Card c){return c==null?-1:(byte)c.id();}
+
+  /**
+   * Writes a readable description of each game recorded in a channel,
+   * in the same words as the descriptions of actions and cards used by the rest of the engine.
+   * @param in the channel holding the records
+   * @param out where the description is written
+   * @throws IOException if the channel cannot be read, or does not hold complete game records
+   **/
+  public static void render(ReadableByteChannel in, Appendable out) throws IOException{
+    Reader r = new Reader(in);
+    StringBuilder line = new StringBuilder();
+    while(r.fill(1)){
+      if(r.buffer.get()!=GAME) throw new IOException("Malformed game record");
+      r.require(2);
+      int numPlayers = r.buffer.get(), handSize = r.buffer.get();
+      String[] players = new String[numPlayers];
+      for(int p = 0; p<numPlayers; p++){
+        r.require(2);
+        byte[] b = new byte[r.buffer.getShort()&0xFFFF];
+        r.require(b.length);
+        r.buffer.get(b);
+        players[p] = new String(b, StandardCharsets.UTF_8);
+      }
+      byte[][] hands = new byte[numPlayers][handSize];
+      r.require(numPlayers*handSize);
+      for(byte[] hand: hands) r.buffer.get(hand);
+      out.append("Game for ").append(String.valueOf(numPlayers)).append(" players\n");
+      for(int p = 0; p<numPlayers; p++){
+        line.setLength(0);
+        line.append(players[p]).append(" (").append(p).append("):");
+        for(byte c: hands[p]) line.append(' ').append(card(c));
+        out.append(line).append('\n');
+      }
+      for(int order = 0; ; order++){
+        r.require(1);
+        byte tag = r.buffer.get();
+        if(tag==END){
+          r.require(1);
+          out.append("Score: ").append(String.valueOf(r.buffer.get())).append("\n\n");
+          break;
+        }
+        if(tag!=MOVE) throw new IOException("Malformed move record");
+        r.require(7);
+        int move = r.buffer.getInt(), drawn = r.buffer.get(), hints = r.buffer.get(), fuse = r.buffer.get();
+        int p = Move.player(move);
+        if(p>=numPlayers) throw new IOException("Malformed move record");
+        line.setLength(0);
+        line.append(order).append(": ");
+        try{
+          int hintee = Move.isHint(move)?Move.hintee(move):p;
+          if(hintee>=numPlayers) throw new IOException("Malformed move record");
+          line.append(Move.toAction(move, players[p], handSize));
+        }
+        catch(IllegalActionException e){throw new IOException("Malformed move record", e);}
+        if(!Move.isHint(move)){
+          int pos = Move.card(move);
+          line.append(" (").append(card(hands[p][pos])).append("), draws ").append(drawn==-1?"nothing":card(drawn));
+          hands[p][pos] = (byte)drawn;
+        }
+        line.append(". Hints: ").append(hints).append(" Fuse: ").append(fuse);
+        out.append(line).append('\n');
+      }
+    }
+  }
+
+  private static String card(int id){return id<0?"-":Card.fromId(id).toString();}
+
+  //reads a channel through a buffer, refilling it so that each record can be read whole
+  private static class Reader{
+    final ReadableByteChannel in;
+    final ByteBuffer buffer = ByteBuffer.allocate(1<<16);
+
+    Reader(ReadableByteChannel in){
+      this.in = in;
+      buffer.flip();
+    }
+
+    //tries to have n bytes remaining, returning false if the channel ends first
+    boolean fill(int n) throws IOException{
+      if(buffer.remaining()>=n) return true;
+      buffer.compact();
+      try{
+        while(buffer.position()<n) if(in.read(buffer)==-1) return false;
+      }
+      finally{buffer.flip();}
+      return true;
+    }
+
+    void require(int n) throws IOException{
+      if(!fill(n)) throw new IOException("Truncated game record");
+    }
+  }
+}
@@ -10,59 +10,176 @@ public class Hanabi{
 
   private Agent[] players;
   private State state;
-  private java.util.Stack<Card> deck;
+  /**The listener told of each move, or null**/
+  private GameListener listener;
+  /**The time each player may take for a move, and for the whole game, in nanoseconds**/
+  private long moveBudget = Long.MAX_VALUE, gameBudget = Long.MAX_VALUE;
+  /**Whether a player over budget forfeits the game, rather than having its move replaced**/
+  private boolean forfeit;
+  /**A buffer for the legal moves, when a move is replaced**/
+  private int[] moves;
 
   /**
    * Initilaises the game.
    * @throws IllegalArgumentException if there are not the right number of player
    * */ 
   public Hanabi(Agent[] agents) throws IllegalArgumentException{
+    this(agents, Card.shuffledDeck());
+  }
+
+  /**
+   * Initialises the game with a deck shuffled from the given seed.
+   * Games with the same seed are dealt the same cards.
+   * @throws IllegalArgumentException if there are not the right number of player
+   * */ 
+  public Hanabi(Agent[] agents, long seed) throws IllegalArgumentException{
+    this(agents, Card.shuffledDeck(seed));
+  }
+
+  /**
+   * Initialises the game with a pre-shuffled deck.
+   * The deck is copied, so the same deck may be used for several games.
+   * @param deck a stack of the 50 cards of the deck, with the first card to be drawn on top
+   * @throws IllegalArgumentException if there are not the right number of player, or the deck is not complete
+   * */ 
+  public Hanabi(Agent[] agents, java.util.Stack<Card> deck) throws IllegalArgumentException{
+    this(agents, deck, History.UNBOUNDED);
+  }
+
+  /**
+   * Initialises the game with a pre-shuffled deck, keeping a limited number of previous states.
+   * Agents will only be able to see historyWindow states back with State.getPreviousState.
+   * @param deck a stack of the 50 cards of the deck, with the first card to be drawn on top
+   * @param historyWindow the number of previous states kept
+   * @throws IllegalArgumentException if there are not the right number of player, the deck is not complete, or the window is negative
+   * */ 
+  public Hanabi(Agent[] agents, java.util.Stack<Card> deck, int historyWindow) throws IllegalArgumentException{
+    this(GameConfig.STANDARD, agents, deck, historyWindow);
+  }
+
+  /**
+   * Initialises a variant of the game with a deck shuffled from the given seed.
+   * Games of the same variant with the same seed are dealt the same cards.
+   * @param config the rules of the game
+   * @throws IllegalArgumentException if there are not the right number of player
+   * */ 
+  public Hanabi(GameConfig config, Agent[] agents, long seed) throws IllegalArgumentException{
+    this(config, agents, config.shuffledDeck(seed), History.UNBOUNDED);
+  }
+
+  /**
+   * Initialises a variant of the game with a pre-shuffled deck, keeping a limited number of previous states.
+   * @param config the rules of the game
+   * @param deck a stack of the cards of the variant's deck, with the first card to be drawn on top
+   * @param historyWindow the number of previous states kept
+   * @throws IllegalArgumentException if there are not the right number of player, the deck is not complete, or the window is negative
+   * */ 
+  @SuppressWarnings("unchecked")
+  public Hanabi(GameConfig config, Agent[] agents, java.util.Stack<Card> deck, int historyWindow) throws IllegalArgumentException{
     //check agents between 2 and 5
     players = agents;
-    deck = Card.shuffledDeck();
     String[] s = new String[agents.length];
     for(int i=0; i<s.length; i++)s[i] = agents[i].toString();
-    state = new State(s, deck);
+    state = new State(config, s, (java.util.Stack<Card>)deck.clone(), historyWindow);
+  }
+
+  /**
+   * Attaches a listener, which is told of each move when the game is played.
+   * Without a listener the game is not recorded at all.
+   * Moves are only timed for the listener if its isTimed method asks for it, and timing alone never replaces a move.
+   * @param listener the listener, or null to remove it
+   **/
+  public void setListener(GameListener listener){this.listener = listener;}
+
+  /**
+   * Limits the time the agents may take to choose their moves.
+   * Agents are not interrupted, so the budget is checked when doAction returns.
+   * A player over budget either forfeits the game, which then scores -1 as for an illegal move,
+   * or has its move replaced by a default move: a hint if there are hint tokens, and otherwise a discard.
+   * Once a player has spent its budget for the game, its agent is no longer asked for moves, and every move it makes is a default move.
+   * @param moveMillis the time allowed for each move, in milliseconds, or 0 for no limit
+   * @param gameMillis the total time allowed to each player for the game, in milliseconds, or 0 for no limit
+   * @param forfeit true if a player over budget forfeits the game, false if its move is replaced
+   **/
+  public void setTimeBudget(long moveMillis, long gameMillis, boolean forfeit){
+    moveBudget = moveMillis>0?moveMillis*1000000L:Long.MAX_VALUE;
+    gameBudget = gameMillis>0?gameMillis*1000000L:Long.MAX_VALUE;
+    this.forfeit = forfeit;
   }
 
   /**
    * Plays the game.
    * The agents will execute their strategies until the game is complete and a number is returned.
-   * @return the score for the game
+   * If an agent or the engine throws an exception, the listener is told the game has ended with a score of -1,
+   * and the exception is passed on to the caller.
+   * @return the score for the game, or -1 if a player made an illegal move
    **/
   public int play(){
+    if(listener!=null) listener.gameStarted(state);
+    boolean budgeted = moveBudget!=Long.MAX_VALUE || gameBudget!=Long.MAX_VALUE;
+    boolean timed = budgeted || (listener!=null && listener.isTimed());
+    long[] spent = new long[players.length];
+    int score;
     try{
       while(!state.gameOver()){
         int p = state.getNextPlayer();
         State localState = state.hideHand(p);
-        state = state.nextState(players[p].doAction(localState),deck);
+        Action a;
+        if(!timed) a = players[p].doAction(localState);
+        else if(budgeted && spent[p]>gameBudget) a = defaultAction(p);
+        else{
+          long start = System.nanoTime();
+          a = players[p].doAction(localState);
+          long nanos = System.nanoTime()-start;
+          spent[p]+=nanos;
+          if(listener!=null) listener.actionTimed(state, p, nanos);
+          if(budgeted && (nanos>moveBudget || spent[p]>gameBudget)){
+            if(listener!=null) listener.budgetExceeded(state, p, nanos, forfeit);
+            if(forfeit) throw new IllegalActionException("Player "+p+" is over the time budget");
+            a = defaultAction(p);
+          }
+        }
+        state = state.nextState(a);
+        if(listener!=null) listener.moveMade(a, state);
       }
-      return state.getScore();
+      score = state.getScore();
+    }
+    catch(IllegalActionException e){score = -1;}
+    catch(RuntimeException e){
+      if(listener!=null) listener.gameEnded(state, -1);
+      throw e;
     }
-    catch(IllegalActionException e){return -1;}
+    if(listener!=null) listener.gameEnded(state, score);
+    return score;
+  }
+
+  //the move made for a player over its time budget: the first legal hint, or failing that the first legal discard
+  private Action defaultAction(int player) throws IllegalActionException{
+    if(moves==null) moves = new int[CompactState.MAX_MOVES];
+    int n = state.legalMoves(moves), hint = -1, discard = -1;
+    for(int i = 0; i<n && hint==-1; i++){
+      if(Move.isHint(moves[i])) hint = i;
+      else if(discard==-1 && Move.type(moves[i])==Move.DISCARD) discard = i;
+    }
+    return state.toAction(moves[hint!=-1?hint:discard!=-1?discard:0]);
   }
 
   /**
    * Plays the game.
    * The agents will execute their strategies until the game is complete and a number is returned.
+   * Every state is appended to the log, which is slow and keeps the whole game in memory:
+   * a GameRecorder is better suited to recording many games.
    * @param log a StringBuffer containing a description of the game
    * @return the score of the game
    **/
-  public int play(StringBuffer log){
-    log.append(state);
-    try{
-      while(!state.gameOver()){
-        int p = state.getNextPlayer();
-        State localState = state.hideHand(p);
-        state = state.nextState(players[p].doAction(localState),deck);
-        log.append(state.toString());
-      }
-      return state.getScore();
-    }
-    catch(IllegalActionException e){
-      e.printStackTrace();
-      return -1;
-    }
+  public int play(final StringBuffer log){
+    GameListener previous = listener;
+    listener = GameListener.all(previous, new GameListener(){
+      public void gameStarted(State s){log.append(s);}
+      public void moveMade(Action a, State s){log.append(s.toString());}
+    });
+    try{return play();}
+    finally{listener = previous;}
   }
 
   public static String critique(int score){
@@ -0,0 +1,185 @@
+package hanabAI;
+
+/**
+ * The log of moves leading to a state in a game of Hanabi.
+ * The log is shared by all the states of a game, and each move is stored as the Action
+ * and a packed record of the information lost by the move (the card removed from the hand and the tokens before the move),
+ * so that earlier states can be rebuilt from later ones on demand.
+ * Only the most recent moves are visible, up to the window of the log, and at most twice the window are held.
+ * Each state holds a History, which is a view of the moves before it. 
+ * Moves are written once, under a lock, into slots that no earlier view can read, 
+ * and the arrays are replaced rather than compacted in place, so a view never changes once its state has been created,
+ * and may be read from any thread without locking.
+ * If a state that is not the latest in its game makes a move, the log is forked,
+ * so branching simulations never overwrite each other's moves.
+ **/
+class History{
+
+  /**A window large enough to keep every move of a game**/
+  static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  /**A move in the log**/
+  static final class Entry{
+    /**The action**/
+    final Action action;
+    /**The packed record of the move**/
+    final int record;
+
+    Entry(Action action, int record){
+      this.action = action;
+      this.record = record;
+    }
+  }
+
+  /**The state shared by the views of a line of play: the number of moves, and the latest view**/
+  private static final class Line{
+    final int window;
+    int size;
+    History latest;
+
+    Line(int window){this.window = window;}
+  }
+
+  /**The line this view belongs to**/
+  private final Line line;
+  /**The moves held, the move of order k at index k-first**/
+  private final Entry[] entries;
+  /**The order of the first move held**/
+  private final int first;
+  /**The order of the first move that can be seen through this view, which is later than first in the views of rebuilt states**/
+  private final int floor;
+
+  /**
+   * Creates an empty log.
+   * @param window the maximum number of moves to keep, or UNBOUNDED
+   * @throws IllegalArgumentException if the window is negative
+   **/
+  History(int window) throws IllegalArgumentException{
+    this(window, 0);
+  }
+
+  /**
+   * Creates an empty log for a game that has already started, with no record of the moves before it.
+   * @param window the maximum number of moves to keep, or UNBOUNDED
+   * @param start the order of the state the log starts from
+   * @throws IllegalArgumentException if the window is negative
+   **/
+  History(int window, int start) throws IllegalArgumentException{
+    this(new Line(window), new Entry[Math.min(checkWindow(window), 64)], start);
+    line.size = start;
+  }
+
+  private static int checkWindow(int window) throws IllegalArgumentException{
+    if(window<0) throw new IllegalArgumentException("History window must not be negative");
+    return window;
+  }
+
+  private History(Line line, Entry[] entries, int first){
+    this.line = line;
+    this.entries = entries;
+    this.first = first;
+    floor = first;
+    line.latest = this;
+  }
+
+  private History(History h, int floor){
+    line = h.line;
+    entries = h.entries;
+    first = h.first;
+    this.floor = floor;
+  }
+
+  /**
+   * Gives the view for a state rebuilt from the state this view belongs to.
+   * The arrays hold more moves than the window, so the rebuilt state must not see further back than the state it was rebuilt from.
+   * @param order the order of the state this view belongs to
+   * @return a view hiding the moves outside the window of that state
+   **/
+  History pin(int order){
+    long from = (long)order-line.window;
+    return from<=floor?this:new History(this, (int)from);
+  }
+
+  /**
+   * Records a move, made from the state this view belongs to.
+   * @param order the order of the state the move was made from
+   * @param a the action
+   * @param record the packed record of the move
+   * @return the view for the new state
+   **/
+  History record(int order, Action a, int record){
+    Entry e = new Entry(a, record);
+    synchronized(line){
+      if(order==line.size) return append(line, e);
+    }
+    //another state has already moved on from this one, so copy the moves this state can see into a new line
+    Line l = new Line(line.window);
+    int from = (int)Math.max(floor, (long)order-line.window);
+    l.size = from;
+    new History(l, new Entry[Math.min(line.window, 64)], from);
+    for(int k = from; k<order; k++) append(l, entries[k-first]);
+    return append(l, e);
+  }
+
+  //adds a move at the end of a line, dropping the moves outside the window when the arrays are full;
+  //the arrays grow to twice the window, so the last window-1 moves are copied once every window+1 moves
+  private static History append(Line l, Entry e){
+    History h = l.latest;
+    int n = l.size++;
+    if(l.window==0) return h;
+    if(n-h.first==h.entries.length){
+      long capacity = Math.min(2L*l.window, Integer.MAX_VALUE-8);
+      if(h.entries.length>=capacity){
+        int keep = l.window-1;
+        Entry[] entries = new Entry[h.entries.length];
+        System.arraycopy(h.entries, n-h.first-keep, entries, 0, keep);
+        h = new History(l, entries, n-keep);
+      }
+      else h = new History(l, java.util.Arrays.copyOf(h.entries, (int)Math.min(capacity, 2L*h.entries.length)), h.first);
+    }
+    h.entries[n-h.first] = e;
+    return h;
+  }
+
+  /**
+   * Gets a move from the log
+   * @param k the order of the state the move was made from
+   * @param order the order of the state this view belongs to
+   * @return the move, or null if it is not before the state, or outside the window
+   **/
+  Entry get(int k, int order){
+    if(k<floor || k>=order || (long)k<(long)order-line.window) return null;
+    return entries[k-first];
+  }
+
+  /**
+   * Packs the information lost by a move
+   * @param removed the card removed from the player's hand, or null for a hint
+   * @param played true if the card was added to a firework
+   * @param hints the hint tokens before the move
+   * @param fuse the fuse tokens before the move
+   * @param finalUnknown true if the final action was not known before the move
+   * @return the packed record
+   **/
+  static int pack(Card removed, boolean played, int hints, int fuse, boolean finalUnknown){
+    return (removed==null?0:removed.id()+1) | (played?1<<6:0) | hints<<7 | fuse<<12 | (finalUnknown?1<<16:0);
+  }
+
+  /**@return the card removed from the hand by the move, or null for a hint**/
+  static Card removed(int record){
+    int id = (record&63)-1;
+    return id<0?null:Card.fromId(id);
+  }
+
+  /**@return true if the card removed was added to a firework**/
+  static boolean played(int record){return (record&1<<6)!=0;}
+
+  /**@return the hint tokens before the move**/
+  static int hints(int record){return (record>>>7)&31;}
+
+  /**@return the fuse tokens before the move**/
+  static int fuse(int record){return (record>>>12)&15;}
+
+  /**@return true if the final action was not known before the move**/
+  static boolean finalUnknown(int record){return (record&1<<16)!=0;}
+}
@@ -0,0 +1,112 @@
+package hanabAI;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A listener collecting the time each agent takes to choose its moves.
+ * Latencies are aggregated by the agent's name in a LatencyHistogram, so all the agents of a type share a histogram.
+ * The monitor is thread safe, so one monitor may listen to every game of a tournament,
+ * and it may be registered as an MBean to be read over JMX while the games are played.
+ **/
+public class LatencyMonitor implements GameListener, LatencyMonitorMBean{
+
+  private final ConcurrentHashMap<String,LatencyHistogram> histograms = new ConcurrentHashMap<String,LatencyHistogram>();
+  private final AtomicLong overruns = new AtomicLong();
+  private final AtomicLong forfeits = new AtomicLong();
+
+  /**
+   * Asks for every move to be timed.
+   * @return true
+   **/
+  public boolean isTimed(){return true;}
+
+  /**
+   * Records the latency of a move against the name of the agent that made it.
+   * @param s the state before the move
+   * @param player the index of the player
+   * @param nanos the time taken by doAction, in nanoseconds
+   **/
+  public void actionTimed(State s, int player, long nanos){
+    String name = s.getName(player);
+    LatencyHistogram h = histograms.get(name);
+    if(h==null){
+      LatencyHistogram created = new LatencyHistogram();
+      h = histograms.putIfAbsent(name, created);
+      if(h==null) h = created;
+    }
+    h.record(nanos);
+  }
+
+  /**
+   * Counts a move over a time budget.
+   * @param s the state before the move
+   * @param player the index of the player
+   * @param nanos the time taken by the move, in nanoseconds
+   * @param forfeit true if the game is forfeited
+   **/
+  public void budgetExceeded(State s, int player, long nanos, boolean forfeit){
+    overruns.incrementAndGet();
+    if(forfeit) forfeits.incrementAndGet();
+  }
+
+  /**
+   * Gets the latencies of an agent
+   * @param agent the name of the agent
+   * @return the histogram of the agent's latencies, which continues to be updated, or null if the agent has not been timed
+   **/
+  public LatencyHistogram getHistogram(String agent){return histograms.get(agent);}
+
+  public String[] getAgents(){
+    String[] agents = histograms.keySet().toArray(new String[0]);
+    java.util.Arrays.sort(agents);
+    return agents;
+  }
+
+  public long getMoves(){
+    long n = 0;
+    for(LatencyHistogram h: histograms.values()) n+=h.getCount();
+    return n;
+  }
+
+  public long getBudgetOverruns(){return overruns.get();}
+
+  public long getForfeits(){return forfeits.get();}
+
+  public String getSummary(){
+    StringBuilder sb = new StringBuilder();
+    for(String agent: getAgents()) sb.append(agent).append(": ").append(histograms.get(agent)).append('\n');
+    if(overruns.get()>0) sb.append("Over budget: ").append(overruns.get()).append(" moves, ").append(forfeits.get()).append(" forfeits\n");
+    return sb.toString();
+  }
+
+  public long percentile(String agent, double p){
+    LatencyHistogram h = histograms.get(agent);
+    return h==null?0:h.getPercentile(p);
+  }
+
+  public long max(String agent){
+    LatencyHistogram h = histograms.get(agent);
+    return h==null?0:h.getMax();
+  }
+
+  /**
+   * Registers the monitor with the platform MBean server, under the name hanabAI:type=LatencyMonitor,name=<i>name</i>.
+   * @param name the name distinguishing this monitor from any others
+   * @return the name the monitor is registered under
+   * @throws JMException if the monitor cannot be registered, for example if the name is taken
+   **/
+  public ObjectName register(String name) throws JMException{
+    ObjectName on = new ObjectName("hanabAI:type=LatencyMonitor,name="+ObjectName.quote(name));
+    java.lang.management.ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+    return on;
+  }
+
+  /**
+   * Returns the summary of the latencies.
+   * @return the same as getSummary
+   **/
+  public String toString(){return getSummary();}
+}
@@ -0,0 +1,36 @@
+package hanabAI;
+
+/**
+ * The management interface of a LatencyMonitor, for reading the latencies of the agents over JMX.
+ * Latencies are in nanoseconds.
+ **/
+public interface LatencyMonitorMBean{
+
+  /**@return the names of the agents that have been timed**/
+  String[] getAgents();
+
+  /**@return the number of moves timed, over all agents**/
+  long getMoves();
+
+  /**@return the number of moves over a time budget, over all agents**/
+  long getBudgetOverruns();
+
+  /**@return the number of games forfeited for being over a time budget**/
+  long getForfeits();
+
+  /**@return a line for each agent, with its count, mean, median, 99th percentile and maximum**/
+  String getSummary();
+
+  /**
+   * @param agent the name of an agent
+   * @param p the percentile, between 0 and 100
+   * @return the percentile of the agent's latencies, or 0 if it has not been timed
+   **/
+  long percentile(String agent, double p);
+
+  /**
+   * @param agent the name of an agent
+   * @return the agent's largest latency, or 0 if it has not been timed
+   **/
+  long max(String agent);
+}
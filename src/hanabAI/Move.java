@@ -0,0 +1,134 @@
+package hanabAI;
+
+/**
+ * Static methods for encoding Hanabi actions as ints, for engines and agents that cannot afford to allocate Action objects.
+ * The bits of an encoded move are:
+ * 0-1 the ordinal of the ActionType;
+ * 2-4 the index of the player performing the action;
+ * 5-7 the position of the card played or discarded;
+ * 8-10 the index of the player receiving a hint;
+ * 11-13 the colour ordinal or value hinted;
+ * 16-20 the positions of the cards hinted at, with bit i set if the ith card matches the hint.
+ * The low 16 bits describe the move completely, given the state it is made in, 
+ * so they may be stored on their own and the hinted cards recovered with withHintMask.
+ **/
+public final class Move{
+
+  /**The ordinals of the action types, as they appear in an encoded move**/
+  public static final int PLAY = 0, DISCARD = 1, HINT_COLOUR = 2, HINT_VALUE = 3;
+
+  private static final ActionType[] TYPES = ActionType.values();
+  private static final Colour[] COLOURS = Colour.values();
+
+  private Move(){}
+
+  /**
+   * Encodes a play action
+   * @param player the index of the player performing the action
+   * @param pos the position of the card to be played
+   * @return the encoded move
+   **/
+  public static int play(int player, int pos){return PLAY | player<<2 | pos<<5;}
+
+  /**
+   * Encodes a discard action
+   * @param player the index of the player performing the action
+   * @param pos the position of the card to be discarded
+   * @return the encoded move
+   **/
+  public static int discard(int player, int pos){return DISCARD | player<<2 | pos<<5;}
+
+  /**
+   * Encodes a colour hint
+   * @param player the index of the player performing the action
+   * @param hintee the index of the player receiving the hint
+   * @param colour the ordinal of the colour hinted
+   * @param mask the positions of the cards with that colour, with bit i set if the ith card matches
+   * @return the encoded move
+   **/
+  public static int hintColour(int player, int hintee, int colour, int mask){
+    return HINT_COLOUR | player<<2 | hintee<<8 | colour<<11 | mask<<16;
+  }
+
+  /**
+   * Encodes a value hint
+   * @param player the index of the player performing the action
+   * @param hintee the index of the player receiving the hint
+   * @param value the value hinted
+   * @param mask the positions of the cards with that value, with bit i set if the ith card matches
+   * @return the encoded move
+   **/
+  public static int hintValue(int player, int hintee, int value, int mask){
+    return HINT_VALUE | player<<2 | hintee<<8 | value<<11 | mask<<16;
+  }
+
+  /**@return the ordinal of the move's ActionType**/
+  public static int type(int move){return move&3;}
+
+  /**@return the ActionType of the move**/
+  public static ActionType actionType(int move){return TYPES[move&3];}
+
+  /**@return the index of the player making the move**/
+  public static int player(int move){return (move>>>2)&7;}
+
+  /**@return the position of the card played or discarded**/
+  public static int card(int move){return (move>>>5)&7;}
+
+  /**@return the index of the player receiving a hint**/
+  public static int hintee(int move){return (move>>>8)&7;}
+
+  /**@return the colour ordinal of a colour hint, or the value of a value hint**/
+  public static int hint(int move){return (move>>>11)&7;}
+
+  /**@return the hinted cards of a hint, with bit i set if the ith card matches the hint**/
+  public static int hintMask(int move){return (move>>>16)&31;}
+
+  /**@return true if the move is a colour or value hint**/
+  public static boolean isHint(int move){return (move&2)!=0;}
+
+  /**
+   * Replaces the hinted cards of a move
+   * @param move the encoded move
+   * @param mask the new hinted cards
+   * @return the move with the given hint mask
+   **/
+  public static int withHintMask(int move, int mask){return (move&0xFFFF) | mask<<16;}
+
+  /**
+   * Encodes an action
+   * @param a the action to be encoded
+   * @return the encoded move
+   * @throws IllegalActionException if the action is badly formed
+   **/
+  public static int encode(Action a) throws IllegalActionException{
+    switch(a.getType()){
+      case PLAY: return play(a.getPlayer(), a.getCard());
+      case DISCARD: return discard(a.getPlayer(), a.getCard());
+      case HINT_COLOUR: return hintColour(a.getPlayer(), a.getHintReceiver(), a.getColour().ordinal(), a.getHintMask());
+      case HINT_VALUE: return hintValue(a.getPlayer(), a.getHintReceiver(), a.getValue(), a.getHintMask());
+      default: throw new IllegalActionException("Unknown action type");
+    }
+  }
+
+  /**
+   * Decodes a move into an action
+   * @param move the encoded move
+   * @param playerName the name of the player making the move
+   * @param handSize the number of cards in the hintee's hand, for hints
+   * @return the action described by the move
+   * @throws IllegalActionException if the move is badly formed
+   **/
+  public static Action toAction(int move, String playerName, int handSize) throws IllegalActionException{
+    switch(type(move)){
+      case PLAY: 
+      case DISCARD: 
+        return new Action(player(move), playerName, actionType(move), card(move));
+      case HINT_COLOUR:
+        return new Action(player(move), playerName, ActionType.HINT_COLOUR, hintee(move), hintMask(move), handSize, COLOURS[hint(move)]);
+      default:
+        return new Action(player(move), playerName, ActionType.HINT_VALUE, hintee(move), hintMask(move), handSize, hint(move));
+    }
+  }
+}
+
+
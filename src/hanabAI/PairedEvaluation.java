@@ -0,0 +1,259 @@
+package hanabAI;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class for comparing two line-ups of agents on the same deals.
+ * Game i is played by both line-ups with the deck shuffled from the seed getSeed()+i (common random numbers),
+ * so the luck of the deal cancels out of the difference in scores, and far fewer games are needed to tell the line-ups apart
+ * than when each line-up is scored on its own deals.
+ * The paired differences (second line-up minus first) are accumulated with Welford's method,
+ * and their mean is given with a confidence interval from the normal approximation.
+ * A failed game scores 0 in the differences, and is counted as a failure in the line-up's ScoreStatistics.
+ * Games are played in parallel on a fork-join pool, in batches as in Tournament.
+ * A sequential evaluation looks at the results after 2<sup>k</sup> batches for k = 0, 1, 2, ...,
+ * and stops at the first look where the confidence interval excludes 0.
+ * The error rate is split between the looks, half to the first, a quarter to the second, and so on,
+ * so the chance of declaring a difference between equal line-ups is at most the error rate however many looks are made.
+ **/
+public class PairedEvaluation{
+
+  /**The number of deals played sequentially by each task**/
+  private static final int BATCH = 64;
+
+  private final AgentFactory first, second;
+  private final ForkJoinPool pool;
+  private final long seed;
+  /**The rules of the deals played**/
+  private volatile GameConfig config = GameConfig.STANDARD;
+
+  /**
+   * Creates an evaluation using every available core.
+   * @param first the factory creating the first line-up
+   * @param second the factory creating the second line-up
+   * @param seed the seed for the deck of the first deal
+   **/
+  public PairedEvaluation(AgentFactory first, AgentFactory second, long seed){
+    this(first, second, ForkJoinPool.commonPool(), seed);
+  }
+
+  /**
+   * Creates an evaluation using the given pool.
+   * @param first the factory creating the first line-up
+   * @param second the factory creating the second line-up
+   * @param pool the pool the games are played on
+   * @param seed the seed for the deck of the first deal
+   **/
+  public PairedEvaluation(AgentFactory first, AgentFactory second, ForkJoinPool pool, long seed){
+    this.first = first;
+    this.second = second;
+    this.pool = pool;
+    this.seed = seed;
+  }
+
+  /**
+   * Gets the seed of the first deal
+   * @return the seed used to shuffle the deck of the first deal
+   **/
+  public long getSeed(){return seed;}
+
+  /**
+   * Sets the rules of the evaluations started from now on
+   * @param config the rules, which are GameConfig.STANDARD by default
+   **/
+  public void setConfig(GameConfig config){this.config = config;}
+
+  /**
+   * Plays a fixed number of deals with both line-ups, and blocks until they are complete.
+   * @param deals the number of deals
+   * @param confidence the confidence level of the interval, such as 0.95
+   * @return the results of the deals
+   * @throws IllegalArgumentException if the confidence level is not between 0 and 1
+   **/
+  public Result play(long deals, double confidence) throws IllegalArgumentException{
+    double z = quantile(1-(1-checkLevel(confidence))/2);
+    Result r = new Result(config);
+    pool.invoke(new Deals(0, deals, r));
+    r.z = z;
+    return r;
+  }
+
+  /**
+   * Plays deals with both line-ups until the difference between them is significant, or the maximum number of deals is reached,
+   * and blocks until the games are complete.
+   * @param maxDeals the largest number of deals to play
+   * @param alpha the error rate, the largest chance of finding a difference between line-ups that play equally well, such as 0.05
+   * @return the results of the deals played, with the confidence interval of the last look
+   * @throws IllegalArgumentException if the error rate is not between 0 and 1
+   **/
+  public Result run(long maxDeals, double alpha) throws IllegalArgumentException{
+    checkLevel(alpha);
+    Result r = new Result(config);
+    long played = 0;
+    double spend = alpha/2;
+    for(long look = BATCH; played<maxDeals; look*=2, spend/=2){
+      long to = Math.min(look, maxDeals);
+      pool.invoke(new Deals(played, to, r));
+      played = to;
+      r.z = quantile(1-spend/2);
+      if(r.isSignificant()) break;
+    }
+    return r;
+  }
+
+  private static double checkLevel(double level) throws IllegalArgumentException{
+    if(!(level>0 && level<1)) throw new IllegalArgumentException("Level must be between 0 and 1");
+    return level;
+  }
+
+  //plays a deal with one line-up
+  private static int playGame(GameConfig config, AgentFactory factory, long seed){
+    try{
+      return new Hanabi(config, factory.create(), seed).play();
+    }
+    catch(RuntimeException e){return -1;}
+  }
+
+  /**A task playing a range of deals, splitting the range until it is a single batch**/
+  private class Deals extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    private final long from, to;
+    private final Result result;
+
+    Deals(long from, long to, Result result){
+      this.from = from;
+      this.to = to;
+      this.result = result;
+    }
+
+    protected void compute(){
+      if(to-from<=BATCH){
+        Result local = new Result(result.rules);
+        GameConfig rules = result.rules;
+        for(long i = from; i<to; i++){
+          int a = playGame(rules, first, seed+i), b = playGame(rules, second, seed+i);
+          local.add(a, b);
+        }
+        synchronized(result){result.add(local);}
+      }
+      else{
+        long mid = (from+to)>>>1;
+        invokeAll(new Deals(from, mid, result), new Deals(mid, to, result));
+      }
+    }
+  }
+
+  /**
+   * The results of an evaluation: the scores of each line-up, and the paired differences.
+   **/
+  public static class Result{
+    /**The rules of the deals, which are kept for the whole evaluation**/
+    private final GameConfig rules;
+    private final ScoreStatistics firstStats, secondStats;
+    /**The number of differences, their mean, and the sum of their squared deviations from the mean**/
+    private long n;
+    private double mean, m2;
+    /**The standard normal quantile of the confidence interval**/
+    private double z;
+
+    private Result(GameConfig rules){
+      this.rules = rules;
+      firstStats = new ScoreStatistics(rules);
+      secondStats = new ScoreStatistics(rules);
+    }
+
+    //records a deal
+    private void add(int a, int b){
+      firstStats.add(a);
+      secondStats.add(b);
+      double d = Math.max(b, 0)-Math.max(a, 0);
+      n++;
+      double delta = d-mean;
+      mean+=delta/n;
+      m2+=delta*(d-mean);
+    }
+
+    //merges the deals of another result, with Chan's update of the deviations
+    private void add(Result r){
+      firstStats.add(r.firstStats);
+      secondStats.add(r.secondStats);
+      if(r.n==0) return;
+      long total = n+r.n;
+      double delta = r.mean-mean;
+      m2+=r.m2+delta*delta*((double)n*r.n/total);
+      mean+=delta*r.n/total;
+      n = total;
+    }
+
+    /**@return the number of deals played**/
+    public long getDeals(){return n;}
+
+    /**@return a copy of the scores of the first line-up**/
+    public ScoreStatistics getFirst(){return firstStats.copy();}
+
+    /**@return a copy of the scores of the second line-up**/
+    public ScoreStatistics getSecond(){return secondStats.copy();}
+
+    /**@return the mean of the second line-up's score minus the first's, over the same deals**/
+    public double getMeanDifference(){return mean;}
+
+    /**@return the sample standard deviation of the differences**/
+    public double getStandardDeviation(){return n<2?0:Math.sqrt(m2/(n-1));}
+
+    /**@return the standard error of the mean difference**/
+    public double getStandardError(){return n<2?Double.POSITIVE_INFINITY:getStandardDeviation()/Math.sqrt(n);}
+
+    /**@return the lower end of the confidence interval of the mean difference**/
+    public double getLower(){return mean-z*getStandardError();}
+
+    /**@return the upper end of the confidence interval of the mean difference**/
+    public double getUpper(){return mean+z*getStandardError();}
+
+    /**@return true if the confidence interval of the mean difference excludes 0**/
+    public boolean isSignificant(){return getLower()>0 || getUpper()<0;}
+
+    /**
+     * Returns a summary of the evaluation
+     * @return the number of deals, the mean score of each line-up, and the mean difference with its confidence interval
+     **/
+    public String toString(){
+      return String.format("Deals: %d  First: %.3f  Second: %.3f%nDifference: %+.3f  [%+.3f, %+.3f]  (std dev %.3f, %s)%n",
+          n, firstStats.getMean(), secondStats.getMean(), mean, getLower(), getUpper(), getStandardDeviation(),
+          isSignificant()?"significant":"not significant");
+    }
+  }
+
+  //the inverse of the standard normal distribution function, by Acklam's rational approximation with a relative error below 1.2e-9
+  private static double quantile(double p){
+    final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+    final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01};
+    final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+    final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00, 3.754408661907416e+00};
+    if(p<0.02425){
+      double q = Math.sqrt(-2*Math.log(p));
+      return (((((c[0]*q+c[1])*q+c[2])*q+c[3])*q+c[4])*q+c[5])/((((d[0]*q+d[1])*q+d[2])*q+d[3])*q+1);
+    }
+    if(p>1-0.02425) return -quantile(1-p);
+    double q = p-0.5, r = q*q;
+    return (((((a[0]*r+a[1])*r+a[2])*r+a[3])*r+a[4])*r+a[5])*q/(((((b[0]*r+b[1])*r+b[2])*r+b[3])*r+b[4])*r+1);
+  }
+
+  /**
+   * This main method compares three basic agents with three of Brad's agents, until the difference is significant at the 5% level.
+   * The largest number of deals may be given as the first argument.
+   **/
+  public static void main(String[] args){
+    long deals = args.length>0?Long.parseLong(args[0]):100000;
+    PairedEvaluation e = new PairedEvaluation(new AgentFactory(){
+      public Agent[] create(){
+        return new Agent[]{new agents.BasicAgent(), new agents.BasicAgent(), new agents.BasicAgent()};
+      }
+    }, new AgentFactory(){
+      public Agent[] create(){
+        return new Agent[]{new agents.BradAgent(), new agents.BradAgent(), new agents.BradAgent()};
+      }
+    }, new java.util.SplittableRandom().nextLong());
+    System.out.print(e.run(deals, 0.05));
+  }
+}
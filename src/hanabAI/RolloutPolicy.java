@@ -0,0 +1,213 @@
+package hanabAI;
+
+import java.util.SplittableRandom;
+
+/**
+ * A fast default policy for playing games out on a CompactState, making the same choices as agents.BasicAgent.
+ * The policy keeps what each player knows about each card of their hand as a mask of card ids, as BeliefTracker does,
+ * so moves must be made through apply for the knowledge to follow the game.
+ * Each move is chosen by the rules of BasicAgent, in order:
+ * play a card known to be playable, discard a card known to be useless, hint a playable card to the first player after the mover who holds one,
+ * play a random card (with probability 0.05 for each fuse token), discard a random card, and hint a random card to the next player with a card.
+ * Random choices are made with the caller's random number generator, and moves are chosen and applied without allocating,
+ * so a policy may be reused for every rollout of a search, with one policy for each thread.
+ **/
+public final class RolloutPolicy{
+
+  /**The probability of a guess being played, by the number of fuse tokens:
+   * BasicAgent tries a guess with probability 0.05 for each token, so one random number stands for all the tries**/
+  private static final double[] GUESS = new double[16];
+  /**The mask of the card ids with each value, by value**/
+  private static final int[] VALUES = new int[6];
+  static{
+    for(int f = 0; f<GUESS.length; f++) GUESS[f] = 1-Math.pow(0.95, f);
+    for(int v = 1; v<=5; v++) VALUES[v] = Determinizer.valueMask(v);
+  }
+
+  /**What each player knows of each slot of their hand, the ith card of player p at p*handSize+i, before exhausted cards are removed**/
+  private int[] masks = new int[0];
+  /**The mask of the cards whose every copy has been played or discarded**/
+  private int exhausted;
+  /**The mask of the cards in the game**/
+  private int all;
+  private int players, handSize;
+  /**The number of suits and the most hint tokens there can be, from the rules**/
+  private int suits, maxHints;
+
+  /**
+   * Creates a policy, which must be reset to a state before it is used.
+   **/
+  public RolloutPolicy(){}
+
+  /**
+   * Starts following a game from a state in which no player knows anything about their hand beyond the cards played and discarded.
+   * @param s the state the policy is to play from
+   **/
+  public void reset(CompactState s){
+    resize(s);
+    java.util.Arrays.fill(masks, all);
+  }
+
+  /**
+   * Starts following a game from a state, with what each player knows about their hand taken from a tracker.
+   * @param s the state the policy is to play from
+   * @param beliefs a tracker brought up to date with a state of the same position as s
+   * @throws IllegalStateException if the tracker has not been updated
+   **/
+  public void reset(CompactState s, BeliefTracker beliefs) throws IllegalStateException{
+    resize(s);
+    for(int p = 0; p<players; p++)
+      for(int i = 0; i<handSize; i++) masks[p*handSize+i] = beliefs.getMask(p, i);
+  }
+
+  /**
+   * Overwrites this policy with the knowledge of another, without allocating once the policy has been used for a game of the same size.
+   * @param policy the policy to copy
+   **/
+  public void copyFrom(RolloutPolicy policy){
+    if(masks.length!=policy.masks.length) masks = new int[policy.masks.length];
+    System.arraycopy(policy.masks, 0, masks, 0, masks.length);
+    exhausted = policy.exhausted;
+    all = policy.all;
+    players = policy.players;
+    handSize = policy.handSize;
+    suits = policy.suits;
+    maxHints = policy.maxHints;
+  }
+
+  //sizes the knowledge for a state, and finds the exhausted cards
+  private void resize(CompactState s){
+    players = s.getNumPlayers();
+    handSize = s.getHandSize();
+    if(masks.length!=players*handSize) masks = new int[players*handSize];
+    GameConfig config = s.getConfig();
+    all = config.getCardMask();
+    suits = config.getSuits();
+    maxHints = config.getHintTokens();
+    exhausted = 0;
+    for(int id = 0; id<config.getIds(); id++) if(removed(s, id)>=Card.count(id)) exhausted|=1<<id;
+  }
+
+  //the number of copies of a card played or discarded
+  private static int removed(CompactState s, int id){
+    return s.getDiscards(id)+(s.getFirework(Card.colourOrdinal(id))>=Card.value(id)?1:0);
+  }
+
+  /**
+   * Gets what a player knows about a card in their hand
+   * @param player the index of the player
+   * @param slot the position of the card in the player's hand
+   * @return a mask with bit i set if the card could have id i
+   **/
+  public int getMask(int player, int slot){return masks[player*handSize+slot]&~exhausted;}
+
+  /**
+   * Applies a move to the state, and updates what the players know.
+   * The move is not checked, and must be legal.
+   * @param s the state the policy is following
+   * @param move the encoded move
+   **/
+  public void apply(CompactState s, int move){
+    if(Move.isHint(move)){
+      int match = Move.type(move)==Move.HINT_COLOUR?31<<5*Move.hint(move):VALUES[Move.hint(move)];
+      int hinted = Move.hintMask(move);
+      for(int i = 0, k = Move.hintee(move)*handSize; i<handSize; i++, k++) masks[k]&=((hinted>>>i&1)!=0?match:~match);
+      s.apply(move);
+      return;
+    }
+    int k = Move.player(move)*handSize+Move.card(move);
+    int c = s.getCard(Move.player(move), Move.card(move));
+    s.apply(move);
+    masks[k] = all;
+    if(removed(s, c)>=Card.count(c)) exhausted|=1<<c;
+  }
+
+  /**
+   * Plays the game out, choosing every move with this policy.
+   * @param s the state the policy is following, which is played to the end in place
+   * @param r the source of randomness for the policy's random choices
+   * @return the final score
+   **/
+  public int rollout(CompactState s, SplittableRandom r){
+    for(int move; (move = choose(s, r))!=-1;) apply(s, move);
+    return s.getScore();
+  }
+
+  /**
+   * Chooses a move for the next player, by the rules of BasicAgent.
+   * @param s the state the policy is following
+   * @param r the source of randomness for the policy's random choices
+   * @return the encoded move, or -1 if the game is over or the rules give no move
+   **/
+  public int choose(CompactState s, SplittableRandom r){
+    int p = s.getNextPlayer();
+    if(p==-1) return -1;
+    int hints = s.getHintTokens();
+    boolean full = hints==maxHints;
+    //the cards that can be played, and the cards below the top of an incomplete firework,
+    //as in BasicAgent cards of a complete firework are not known to be useless
+    int playable = 0, useless = 0;
+    for(int colour = 0; colour<suits; colour++){
+      int height = s.getFirework(colour);
+      if(height<5){
+        playable|=1<<5*colour+height;
+        useless|=(1<<height)-1<<5*colour;
+      }
+    }
+    //play, then discard, a card whose colour and value are both known
+    int discard = -1;
+    for(int i = 0, k = p*handSize; i<handSize; i++, k++){
+      int mask = masks[k]&~exhausted;
+      if(mask==0 || (mask&mask-1)!=0 || s.getCard(p, i)==CompactState.EMPTY) continue;
+      if((mask&playable)!=0) return Move.play(p, i);
+      if(discard==-1 && (mask&useless)!=0) discard = i;
+    }
+    if(discard!=-1 && !full) return Move.discard(p, discard);
+    //hint a playable card to the first player after the mover holding one
+    if(hints>0){
+      for(int j = 1, hintee = p; j<players; j++){
+        if(++hintee==players) hintee = 0;
+        for(int i = 0; i<handSize; i++){
+          int c = s.getCard(hintee, i);
+          if(c!=CompactState.EMPTY && (playable>>>c&1)!=0) return hint(s, p, hintee, c, r);
+        }
+      }
+    }
+    if(r.nextDouble()<GUESS[s.getFuseTokens()]){
+      int i = randomCard(s, p, r);
+      if(i!=-1) return Move.play(p, i);
+    }
+    if(!full){
+      int i = randomCard(s, p, r);
+      if(i!=-1) return Move.discard(p, i);
+    }
+    //hint a random card to the next player with a card
+    if(hints>0){
+      for(int j = 1, hintee = p; j<players; j++){
+        if(++hintee==players) hintee = 0;
+        int i = randomCard(s, hintee, r);
+        if(i!=-1) return hint(s, p, hintee, s.getCard(hintee, i), r);
+      }
+    }
+    return -1;
+  }
+
+  //a colour or value hint about a card, on the toss of a coin
+  private static int hint(CompactState s, int player, int hintee, int c, SplittableRandom r){
+    if(r.nextBoolean()){
+      int colour = Card.colourOrdinal(c);
+      return Move.hintColour(player, hintee, colour, s.hintMask(hintee, Move.HINT_COLOUR, colour));
+    }
+    int value = Card.value(c);
+    return Move.hintValue(player, hintee, value, s.hintMask(hintee, Move.HINT_VALUE, value));
+  }
+
+  //a random occupied slot of a hand, or -1 if the hand is empty
+  private int randomCard(CompactState s, int player, SplittableRandom r){
+    int count = 0;
+    for(int i = 0; i<handSize; i++) if(s.getCard(player, i)!=CompactState.EMPTY) count++;
+    if(count==0) return -1;
+    for(int i = 0, k = r.nextInt(count); ; i++)
+      if(s.getCard(player, i)!=CompactState.EMPTY && k--==0) return i;
+  }
+}
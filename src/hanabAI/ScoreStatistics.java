@@ -0,0 +1,183 @@
+package hanabAI;
+
+/**
+ * A class for accumulating the scores of many games of Hanabi.
+ * Games that end with an illegal action, or with an agent crashing, are counted as failures
+ * and are not included in the score distribution.
+ * Crashes, games ended by an exception, are also counted on their own, and the first is kept with the seed of its deal so it can be replayed.
+ * Statistics are kept for the games of one variant, whose rules give the top score, so games of different variants are never mixed.
+ * The class is not thread safe: each thread should use its own instance, and merge them with add(ScoreStatistics).
+ **/
+public class ScoreStatistics{
+
+  /**The rules of the games**/
+  private final GameConfig config;
+
+  /**The number of games with a valid score**/
+  private long games;
+  /**The number of games that could not be completed**/
+  private long failures;
+  /**The number of failed games ended by an exception, and the first of the exceptions with the seed of its game**/
+  private long crashes;
+  private Throwable firstCrash;
+  private long firstCrashSeed;
+  /**The sum of the scores**/
+  private long sum;
+  /**The sum of the squares of the scores**/
+  private long sumSquares;
+  /**The number of games achieving each score**/
+  private final long[] histogram;
+
+  /**
+   * Creates empty statistics for games of the standard rules.
+   **/
+  public ScoreStatistics(){this(GameConfig.STANDARD);}
+
+  /**
+   * Creates empty statistics for games of a variant.
+   * @param config the rules of the games
+   **/
+  public ScoreStatistics(GameConfig config){
+    this.config = config;
+    histogram = new long[config.getMaxScore()+1];
+  }
+
+  /**
+   * Gets the rules of the games
+   * @return the variant the games are played under
+   **/
+  public GameConfig getConfig(){return config;}
+
+  /**
+   * Records the result of a game.
+   * @param score the score of the game, or a negative number if the game failed
+   * @throws IllegalArgumentException if the score is above the top score of the variant
+   **/
+  public void add(int score) throws IllegalArgumentException{
+    if(score<0){failures++; return;}
+    if(score>=histogram.length) throw new IllegalArgumentException("Score above the maximum of "+config.getMaxScore()+": "+score);
+    games++;
+    sum+=score;
+    sumSquares+=(long)score*score;
+    histogram[score]++;
+  }
+
+  /**
+   * Records a game ended by an exception, which is counted as a failure.
+   * @param seed the seed of the game's deck
+   * @param cause the exception that ended the game
+   **/
+  public void addCrash(long seed, Throwable cause){
+    failures++;
+    if(crashes++==0){
+      firstCrash = cause;
+      firstCrashSeed = seed;
+    }
+  }
+
+  /**
+   * Merges the results of another set of games into this one.
+   * @param stats the statistics to be added
+   * @throws IllegalArgumentException if the games were played under different rules
+   **/
+  public void add(ScoreStatistics stats) throws IllegalArgumentException{
+    if(!stats.config.equals(config)) throw new IllegalArgumentException("Cannot merge games of "+stats.config+" with games of "+config);
+    games+=stats.games;
+    failures+=stats.failures;
+    if(crashes==0){
+      firstCrash = stats.firstCrash;
+      firstCrashSeed = stats.firstCrashSeed;
+    }
+    crashes+=stats.crashes;
+    sum+=stats.sum;
+    sumSquares+=stats.sumSquares;
+    for(int i = 0; i<stats.histogram.length; i++) histogram[i]+=stats.histogram[i];
+  }
+
+  /**
+   * Gets the number of games completed
+   * @return the number of games with a valid score
+   **/
+  public long getGames(){return games;}
+
+  /**
+   * Gets the number of games that failed
+   * @return the number of games ended by an illegal action or an exception
+   **/
+  public long getFailures(){return failures;}
+
+  /**
+   * Gets the number of games that crashed
+   * @return the number of failed games ended by an exception rather than an illegal action
+   **/
+  public long getCrashes(){return crashes;}
+
+  /**
+   * Gets the exception that ended the first crashed game recorded
+   * @return the exception, or null if no game has crashed
+   **/
+  public Throwable getFirstCrash(){return firstCrash;}
+
+  /**
+   * Gets the seed of the first crashed game recorded
+   * @return the seed of the game's deck, or 0 if no game has crashed
+   **/
+  public long getFirstCrashSeed(){return firstCrashSeed;}
+
+  /**
+   * Gets the mean score
+   * @return the mean score of the completed games, or 0 if there are none
+   **/
+  public double getMean(){return games==0?0:(double)sum/games;}
+
+  /**
+   * Gets the standard deviation of the scores
+   * @return the sample standard deviation of the scores of the completed games
+   **/
+  public double getStandardDeviation(){
+    if(games<2) return 0;
+    double mean = getMean();
+    return Math.sqrt(Math.max(0,(sumSquares - games*mean*mean)/(games-1)));
+  }
+
+  /**
+   * Gets the histogram of scores
+   * @return an array where the ith entry is the number of games with score i
+   **/
+  public long[] getHistogram(){return histogram.clone();}
+
+  /**
+   * Gets the proportion of completed games with a perfect score, 5 points for each suit of the variant
+   * @return the rate of perfect games
+   **/
+  public double getPerfectRate(){return games==0?0:(double)histogram[config.getMaxScore()]/games;}
+
+  /**
+   * Produces a copy of the statistics
+   * @return an independent copy of these statistics
+   **/
+  public ScoreStatistics copy(){
+    ScoreStatistics s = new ScoreStatistics(config);
+    s.add(this);
+    return s;
+  }
+
+  /**
+   * A summary of the statistics, including the histogram
+   * @return a description of the score distribution
+   **/
+  public String toString(){
+    StringBuilder sb = new StringBuilder();
+    if(!config.equals(GameConfig.STANDARD)) sb.append("Rules: ").append(config).append('\n');
+    sb.append("Games: ").append(games).append(" (failed: ").append(failures);
+    if(crashes>0) sb.append(", crashed: ").append(crashes);
+    sb.append(")\n");
+    if(crashes>0) sb.append("First crash, seed ").append(firstCrashSeed).append(": ").append(firstCrash).append('\n');
+    sb.append(String.format("Mean: %.3f  Std dev: %.3f  Perfect: %.2f%%%n", getMean(), getStandardDeviation(), 100*getPerfectRate()));
+    for(int i = 0; i<histogram.length; i++)
+      if(histogram[i]>0) sb.append(String.format("%2d: %d%n", i, histogram[i]));
+    return sb.toString();
+  }
+}
+
+
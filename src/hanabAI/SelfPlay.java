@@ -0,0 +1,237 @@
+package hanabAI;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A generator of training data for learned policies, from games played by a line-up of agents.
+ * Every decision of every agent is recorded as a sample: the features of the state the agent saw (see FeatureEncoder),
+ * the move it chose, in the relative encoding of FeatureEncoder.relativeMove, and the final score of the game.
+ * Games are played in parallel, one worker for each thread of the pool, and each worker writes its samples into a preallocated buffer,
+ * which is written to a new shard file in the output directory when it is full, and when the worker is done.
+ * Games that end in an illegal move or a crash are not recorded.
+ * The deck for game i is shuffled from the seed getSeed()+i, as in Tournament,
+ * but the games in a shard, and the numbering of the shards, depend on the scheduling of the workers.
+ * <p>
+ * A shard file starts with a 16 byte header of big-endian ints: the magic number MAGIC, the number of samples,
+ * the size of each sample in bytes (RECORD), and the size of the features in bytes (FeatureEncoder.SIZE).
+ * The samples follow, each made of the features, the move as a big-endian int, the final score as a byte, and 3 zero bytes.
+ * The samples are fixed size, so a shard may be mapped straight into a tensor.
+ **/
+public class SelfPlay{
+
+  /**The first int of every shard file**/
+  public static final int MAGIC = 0x48535031;
+  /**The number of bytes in the header of a shard file**/
+  public static final int HEADER = 16;
+  /**The number of bytes in each sample of a shard file**/
+  public static final int RECORD = FeatureEncoder.SIZE+8;
+  /**The number of games claimed by a worker at a time**/
+  private static final int BATCH = 64;
+  /**More than the number of moves in any game of any variant: there are at most 60 plays and discards,
+   * and 31 hints plus one for each discard or completed firework**/
+  private static final int GAME_SAMPLES = 256;
+
+  private final AgentFactory factory;
+  private final Path directory;
+  private final ForkJoinPool pool;
+  private final long seed;
+  /**The rules of the games played**/
+  private volatile GameConfig config = GameConfig.STANDARD;
+  /**The number of samples in each full shard**/
+  private int shardSamples = 1<<16;
+  /**The index of the next game to be played, so repeated calls to run deal new games**/
+  private final AtomicLong nextGame = new AtomicLong();
+  /**The number of the next shard file**/
+  private final AtomicInteger nextShard = new AtomicInteger();
+
+  /**
+   * Creates a generator using every available core.
+   * @param factory the factory creating the agents for each game
+   * @param directory the directory the shard files are written to, which must exist
+   * @param seed the seed for the deck of the first game
+   **/
+  public SelfPlay(AgentFactory factory, Path directory, long seed){
+    this(factory, directory, ForkJoinPool.commonPool(), seed);
+  }
+
+  /**
+   * Creates a generator using the given pool.
+   * @param factory the factory creating the agents for each game
+   * @param directory the directory the shard files are written to, which must exist
+   * @param pool the pool the games are played on, with a worker for each thread
+   * @param seed the seed for the deck of the first game
+   **/
+  public SelfPlay(AgentFactory factory, Path directory, ForkJoinPool pool, long seed){
+    this.factory = factory;
+    this.directory = directory;
+    this.pool = pool;
+    this.seed = seed;
+  }
+
+  /**
+   * Gets the seed of the first game
+   * @return the seed used to shuffle the deck of the first game
+   **/
+  public long getSeed(){return seed;}
+
+  /**
+   * Sets the rules of the games played from now on
+   * @param config the rules, which are GameConfig.STANDARD by default
+   **/
+  public void setConfig(GameConfig config){this.config = config;}
+
+  /**
+   * Sets the number of samples in each shard, which is also the size of each worker's buffer.
+   * The last shard of each worker may hold fewer.
+   * @param samples the number of samples in a full shard, at least enough for one game
+   * @throws IllegalArgumentException if the number is too small, or the buffer would be over 2GB
+   **/
+  public void setShardSamples(int samples) throws IllegalArgumentException{
+    if(samples<GAME_SAMPLES || samples>(Integer.MAX_VALUE-HEADER)/RECORD) throw new IllegalArgumentException("Shard size out of range: "+samples);
+    shardSamples = samples;
+  }
+
+  /**
+   * Plays the given number of games, writing their samples to shard files, and blocks until they are complete.
+   * @param games the number of games to play
+   * @return the number of samples written
+   * @throws IOException if a shard file cannot be written
+   **/
+  public long run(long games) throws IOException{
+    long first = nextGame.getAndAdd(games);
+    AtomicLong claimed = new AtomicLong(first);
+    Worker[] workers = new Worker[pool.getParallelism()];
+    for(int i = 0; i<workers.length; i++) workers[i] = new Worker(claimed, first+games);
+    for(Worker w: workers) pool.execute(w);
+    long samples = 0;
+    IOException error = null;
+    for(Worker w: workers){
+      samples+=w.join();
+      if(error==null) error = w.error;
+    }
+    if(error!=null) throw error;
+    return samples;
+  }
+
+  //writes a buffer of samples to the next shard file
+  private void writeShard(byte[] buffer, int samples) throws IOException{
+    ByteBuffer b = ByteBuffer.wrap(buffer, 0, HEADER+samples*RECORD);
+    b.putInt(0, MAGIC).putInt(4, samples).putInt(8, RECORD).putInt(12, FeatureEncoder.SIZE);
+    Path file = directory.resolve(String.format("shard-%06d.bin", nextShard.getAndIncrement()));
+    try(FileChannel c = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)){
+      while(b.hasRemaining()) c.write(b);
+    }
+  }
+
+  /**A worker playing games from a shared range until it is used up, with its own buffer of samples**/
+  private class Worker extends ForkJoinTask<Long>{
+    private static final long serialVersionUID = 1L;
+    private final AtomicLong claimed;
+    private final long end;
+    private final byte[] buffer = new byte[HEADER+shardSamples*RECORD];
+    private int samples;
+    private long written;
+    /**The error that stopped the worker, or null**/
+    private IOException error;
+
+    Worker(AtomicLong claimed, long end){
+      this.claimed = claimed;
+      this.end = end;
+    }
+
+    public Long getRawResult(){return written;}
+
+    protected void setRawResult(Long value){}
+
+    protected boolean exec(){
+      try{
+        for(long from; (from = claimed.getAndAdd(BATCH))<end;)
+          for(long i = from; i<Math.min(from+BATCH, end); i++) playGame(i);
+        if(samples>0) flush();
+      }
+      catch(IOException e){error = e;}
+      return true;
+    }
+
+    //plays a game, keeping its samples if it ends normally
+    private void playGame(long game) throws IOException{
+      if(samples+GAME_SAMPLES>shardSamples) flush();
+      int start = samples;
+      int score;
+      try{
+        Agent[] agents = factory.create();
+        for(int i = 0; i<agents.length; i++) agents[i] = new Recorder(agents[i], this);
+        score = new Hanabi(config, agents, seed+game).play();
+      }
+      catch(RuntimeException e){score = -1;}
+      if(score<0) samples = start;
+      else for(int k = start; k<samples; k++) buffer[HEADER+k*RECORD+FeatureEncoder.SIZE+4] = (byte)score;
+    }
+
+    private void flush() throws IOException{
+      writeShard(buffer, samples);
+      written+=samples;
+      samples = 0;
+    }
+  }
+
+  /**An agent recording the decisions of another agent into a worker's buffer**/
+  private static class Recorder implements Agent{
+    private final Agent agent;
+    private final Worker worker;
+    private final BeliefTracker beliefs = new BeliefTracker();
+
+    Recorder(Agent agent, Worker worker){
+      this.agent = agent;
+      this.worker = worker;
+    }
+
+    public String toString(){return agent.toString();}
+
+    public Action doAction(State s){
+      beliefs.update(s);
+      byte[] buffer = worker.buffer;
+      int pos = HEADER+worker.samples*RECORD;
+      FeatureEncoder.encode(s, beliefs, buffer, pos);
+      Action a = agent.doAction(s);
+      int move;
+      try{move = FeatureEncoder.relativeMove(Move.encode(a), s.getObserver(), s.getPlayers().length);}
+      catch(IllegalActionException | RuntimeException e){return a;}
+      pos+=FeatureEncoder.SIZE;
+      buffer[pos] = (byte)(move>>>24);
+      buffer[pos+1] = (byte)(move>>>16);
+      buffer[pos+2] = (byte)(move>>>8);
+      buffer[pos+3] = (byte)move;
+      buffer[pos+5] = buffer[pos+6] = buffer[pos+7] = 0;
+      worker.samples++;
+      return a;
+    }
+  }
+
+  /**
+   * This main method writes the samples of games of three basic agents to a directory, using every core.
+   * The directory and the number of games may be given as the first and second arguments.
+   **/
+  public static void main(String[] args) throws IOException{
+    Path dir = java.nio.file.Paths.get(args.length>0?args[0]:"selfplay");
+    long games = args.length>1?Long.parseLong(args[1]):10000;
+    java.nio.file.Files.createDirectories(dir);
+    SelfPlay sp = new SelfPlay(new AgentFactory(){
+      public Agent[] create(){
+        return new Agent[]{new agents.BasicAgent(), new agents.BasicAgent(), new agents.BasicAgent()};
+      }
+    }, dir, new java.util.SplittableRandom().nextLong());
+    long start = System.nanoTime();
+    long samples = sp.run(games);
+    double seconds = (System.nanoTime()-start)/1e9;
+    System.out.printf("%d games, %d samples in %.2fs (%.0f samples/min)%n", games, samples, seconds, samples/seconds*60);
+  }
+}
@@ -0,0 +1,443 @@
+package hanabAI;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A solver finding the best score that can be made from a deal when every card, including the order of the deck, is known to every player.
+ * No agent can do better on the deal, so the solver's scores are upper bounds for judging agents,
+ * and a tournament's deals can be solved with the same seeds to see how far each game fell short.
+ * <p>
+ * The solver searches the tree of moves depth first on a CompactState, with make and unmake.
+ * With perfect information the moves that leave the same state are merged:
+ * every hint only spends a token and passes the turn, so one hint stands for them all,
+ * copies of a card in a hand are played or discarded once, and dead cards, which can never be played, are all alike.
+ * Playing a card that cannot be played is only tried when a discard is not allowed, as the discard of the same card is never worse.
+ * Each node is bounded by the most the fireworks could still grow, given the cards discarded and the last card of the deck,
+ * which is lost when it is drawn, and by the turns left in which a card can be played.
+ * A node is cut off when its bound is no better than the best score already found, and the search stops as soon as the bound is reached,
+ * so most deals that can be won are solved by the first line searched.
+ * Positions are cached in a transposition table keyed on a Zobrist hash of the hands (as multisets, with dead cards alike),
+ * the fireworks, the tokens, the position in the deck, the next player and the turns left.
+ * The discards are not hashed, as they are the cards of the deal not in the hands, the deck or the fireworks.
+ * <p>
+ * A deal whose search exceeds the node limit is given bounds rather than its value:
+ * the best score of a game reached, and the bound of the first state.
+ * Deals are solved in parallel, one worker for each thread of the pool, claiming deals one at a time,
+ * as the time taken by a deal can vary by orders of magnitude.
+ * The workers share one lock-free TranspositionTable, with the keys of each deal mixed with a random number of its own.
+ * The deck for deal i is shuffled from the seed getSeed()+i, as in Tournament.
+ **/
+public class Solver{
+
+  /**The number of entries in the transposition table, as a power of 2**/
+  private static final int TABLE_BITS = 21;
+  /**The flag of a table entry whose value is exact, rather than an upper bound**/
+  private static final int EXACT = 32;
+  /**The canonical id of a dead card**/
+  private static final int DEAD = Card.IDS;
+  /**The random numbers of the Zobrist hash**/
+  private static final long[] HAND = new long[5*(Card.IDS+1)*5], FIREWORK = new long[Colour.values().length*6],
+    HINTS = new long[32], FUSE = new long[16], DECK = new long[61], NEXT = new long[5], LEFT = new long[7];
+  static{
+    SplittableRandom r = new SplittableRandom(0x5A0B1575L);
+    for(long[] table: new long[][]{HAND, FIREWORK, HINTS, FUSE, DECK, NEXT, LEFT})
+      for(int i = 0; i<table.length; i++) table[i] = r.nextLong();
+  }
+
+  private final ForkJoinPool pool;
+  private final long seed;
+  /**The table shared by every search, allocated on the first solve**/
+  private TranspositionTable table;
+  /**The rules of the deals solved**/
+  private volatile GameConfig config = GameConfig.STANDARD;
+  /**The most nodes searched for each deal**/
+  private volatile long nodeLimit = 1L<<21;
+
+  /**
+   * Creates a solver using every available core.
+   * @param seed the seed for the deck of the first deal
+   **/
+  public Solver(long seed){
+    this(ForkJoinPool.commonPool(), seed);
+  }
+
+  /**
+   * Creates a solver using the given pool.
+   * @param pool the pool the deals are solved on, with a worker for each thread
+   * @param seed the seed for the deck of the first deal
+   **/
+  public Solver(ForkJoinPool pool, long seed){
+    this.pool = pool;
+    this.seed = seed;
+  }
+
+  /**
+   * Gets the seed of the first deal
+   * @return the seed used to shuffle the deck of the first deal
+   **/
+  public long getSeed(){return seed;}
+
+  /**
+   * Sets the rules of the deals solved from now on
+   * @param config the rules, which are GameConfig.STANDARD by default
+   **/
+  public void setConfig(GameConfig config){this.config = config;}
+
+  /**
+   * Sets the most nodes searched for a deal before the search gives up and the deal is given bounds.
+   * @param nodes the limit, which is 2<sup>21</sup> by default
+   * @throws IllegalArgumentException if the limit is not positive
+   **/
+  public void setNodeLimit(long nodes) throws IllegalArgumentException{
+    if(nodes<1) throw new IllegalArgumentException("Node limit must be positive");
+    nodeLimit = nodes;
+  }
+
+  /**
+   * Solves a range of deals, and blocks until they are complete.
+   * @param players the number of players
+   * @param deals the number of deals, the first shuffled from getSeed()
+   * @return the bounds of each deal
+   * @throws IllegalArgumentException if the number of players is not 2 to 5
+   **/
+  public Result solve(int players, int deals) throws IllegalArgumentException{
+    if(players<2 || players>5) throw new IllegalArgumentException("incorrect parameters");
+    String[] names = new String[players];
+    for(int i = 0; i<players; i++) names[i] = "Player "+i;
+    GameConfig rules = config;
+    Result result = new Result(rules, deals);
+    AtomicInteger claimed = new AtomicInteger();
+    Worker[] workers = new Worker[Math.min(pool.getParallelism(), Math.max(deals, 1))];
+    for(int i = 0; i<workers.length; i++) workers[i] = new Worker(rules, names, claimed, result);
+    for(Worker w: workers) pool.execute(w);
+    for(Worker w: workers) w.join();
+    return result;
+  }
+
+  /**
+   * Solves the game from a state, on the calling thread.
+   * @param s a global state
+   * @return the bounds of the state, as a result of one deal
+   * @throws IllegalArgumentException if the state is not global
+   **/
+  public Result solve(State s) throws IllegalArgumentException{
+    Result result = new Result(s.getConfig(), 1);
+    new Search(table(), nodeLimit).solve(CompactState.fromState(s), result, 0);
+    return result;
+  }
+
+  private synchronized TranspositionTable table(){
+    if(table==null) table = new TranspositionTable(TABLE_BITS);
+    return table;
+  }
+
+  /**A worker solving deals from a shared counter until they are used up**/
+  private class Worker extends ForkJoinTask<Void>{
+    private static final long serialVersionUID = 1L;
+    private final GameConfig rules;
+    private final String[] names;
+    private final AtomicInteger claimed;
+    private final Result result;
+
+    Worker(GameConfig rules, String[] names, AtomicInteger claimed, Result result){
+      this.rules = rules;
+      this.names = names;
+      this.claimed = claimed;
+      this.result = result;
+    }
+
+    public Void getRawResult(){return null;}
+
+    protected void setRawResult(Void value){}
+
+    protected boolean exec(){
+      Search search = new Search(table(), nodeLimit);
+      for(int i; (i = claimed.getAndIncrement())<result.lower.length;){
+        CompactState s = new CompactState(rules, names, rules.shuffledOrder(new SplittableRandom(seed+i)));
+        search.solve(s, result, i);
+      }
+      return true;
+    }
+  }
+
+  /**A depth first search, reused for every deal a worker solves**/
+  private static class Search{
+    /**The shared table, each value a score with the EXACT flag**/
+    private final TranspositionTable table;
+    private final long limit;
+    /**A random number mixed into every key, so entries left by other deals are not mistaken for this one's**/
+    private long salt;
+    private final SplittableRandom salts = new SplittableRandom();
+    private CompactState s;
+    /**The last card of the deck, which never reaches a hand**/
+    private int lost;
+    private long nodes;
+    private boolean aborted;
+    /**The best score of a game reached in this deal**/
+    private int best;
+    //buffers for the moves at each depth, and the counts of each card in a hand while hashing
+    private int[][] moves = new int[128][];
+    private final int[] seen = new int[Card.IDS+1];
+    //the dead cards and the height each firework could reach, for the state being searched
+    private int dead;
+    private final int[] ceiling = new int[Colour.values().length];
+
+    Search(TranspositionTable table, long limit){
+      this.table = table;
+      this.limit = limit;
+    }
+
+    //solves a state, recording its bounds as the given deal
+    void solve(CompactState state, Result result, int deal){
+      s = state;
+      byte[] deck = s.deckIds();
+      lost = deck[deck.length-1];
+      salt = salts.nextLong();
+      nodes = 0;
+      aborted = false;
+      best = s.getScore();
+      int value = search(-1, 0);
+      int upper;
+      if(aborted){
+        analyse();
+        upper = bound();
+      }
+      else best = upper = value;
+      result.set(deal, best, upper, nodes);
+    }
+
+    //finds the value of the state if it is more than alpha, and otherwise an upper bound of it no more than alpha
+    private int search(int alpha, int depth){
+      if(s.gameOver()){
+        int score = s.getScore();
+        if(score>best) best = score;
+        return score;
+      }
+      if(++nodes>limit){
+        aborted = true;
+        return 0;
+      }
+      analyse();
+      int upper = bound(), score = s.getScore();
+      if(upper<=alpha || upper==score) return upper;
+      long key = key();
+      long entry = table.get(key, -1);
+      if(entry!=-1){
+        int value = (int)entry&31;
+        if((entry&EXACT)!=0 || value<=alpha) return value;
+        upper = Math.min(upper, value);
+      }
+      if(depth==moves.length) moves = java.util.Arrays.copyOf(moves, depth*2);
+      if(moves[depth]==null) moves[depth] = new int[CompactState.MAX_MOVES];
+      int[] list = moves[depth];
+      int n = generate(list);
+      int value = -1;
+      for(int i = 0; i<n && value<upper; i++){
+        s.make(list[i]);
+        int v = search(Math.max(alpha, value), depth+1);
+        s.unmake();
+        if(aborted) return 0;
+        if(v>value) value = v;
+      }
+      table.put(key, value | (value>alpha?EXACT:0));
+      return value;
+    }
+
+    //finds the dead cards of the state, and the height each firework could reach
+    private void analyse(){
+      int suits = s.getConfig().getSuits();
+      dead = 0;
+      for(int c = 0; c<suits; c++){
+        int height = s.getFirework(c), top = height;
+        while(top<5 && gone(c*5+top)<Card.count(c*5+top)) top++;
+        ceiling[c] = top;
+        for(int v = 1; v<=5; v++) if(v<=height || v>top) dead|=1<<c*5+v-1;
+      }
+    }
+
+    //the number of copies of a card discarded or lost
+    private int gone(int c){return s.getDiscards(c)+(c==lost?1:0);}
+
+    //the most the score could reach, from the fireworks' ceilings and the turns left:
+    //every play but the last few draws a card, and the game ends a round after the deck runs out
+    private int bound(){
+      int score = s.getScore(), gain = 0;
+      for(int c = 0; c<s.getConfig().getSuits(); c++) gain+=ceiling[c]-s.getFirework(c);
+      int turns = s.getFinalActionIndex()!=-1?s.getFinalActionIndex()-s.getOrder():s.getDeckSize()+s.getNumPlayers()-1;
+      return score+Math.min(gain, turns);
+    }
+
+    //the hash of the state, as described for the class
+    private long key(){
+      int players = s.getNumPlayers(), handSize = s.getHandSize();
+      long key = salt;
+      for(int p = 0; p<players; p++){
+        for(int i = 0; i<handSize; i++){
+          int c = canonical(s.getCard(p, i));
+          if(c!=CompactState.EMPTY) key^=HAND[(p*(Card.IDS+1)+c)*5+seen[c]++];
+        }
+        for(int i = 0; i<handSize; i++){
+          int c = canonical(s.getCard(p, i));
+          if(c!=CompactState.EMPTY) seen[c] = 0;
+        }
+      }
+      for(int c = 0; c<s.getConfig().getSuits(); c++) key^=FIREWORK[c*6+s.getFirework(c)];
+      key^=HINTS[s.getHintTokens()]^FUSE[s.getFuseTokens()]^DECK[s.getDeckSize()]^NEXT[s.getNextPlayer()];
+      if(s.getFinalActionIndex()!=-1) key^=LEFT[s.getFinalActionIndex()-s.getOrder()+1];
+      return key;
+    }
+
+    //the card, or DEAD if it can never be played
+    private int canonical(int c){return c==CompactState.EMPTY || (dead>>>c&1)==0?c:DEAD;}
+
+    //lists the moves worth trying, most promising first: plays, discards of dead cards, a hint, other discards, and then misplays
+    private int generate(int[] list){
+      int p = s.getNextPlayer(), handSize = s.getHandSize();
+      int hints = s.getHintTokens();
+      boolean discards = hints<s.getConfig().getHintTokens();
+      int n = 0, played = 0, discarded = 0;
+      for(int i = 0; i<handSize; i++){
+        int c = s.getCard(p, i);
+        if(c==CompactState.EMPTY || s.getFirework(Card.colourOrdinal(c))!=Card.value(c)-1 || (played>>>c&1)!=0) continue;
+        played|=1<<c;
+        list[n++] = Move.play(p, i);
+      }
+      if(discards){
+        for(int i = 0; i<handSize; i++){
+          int c = s.getCard(p, i);
+          if(c==CompactState.EMPTY || (dead>>>c&1)==0) continue;
+          list[n++] = Move.discard(p, i);
+          break;
+        }
+      }
+      if(hints>0){
+        int players = s.getNumPlayers();
+        for(int j = 1, q = p; j<players; j++){
+          if(++q==players) q = 0;
+          int c = s.getCard(q, 0);
+          for(int i = 1; c==CompactState.EMPTY && i<handSize; i++) c = s.getCard(q, i);
+          if(c==CompactState.EMPTY) continue;
+          int colour = Card.colourOrdinal(c);
+          list[n++] = Move.hintColour(p, q, colour, s.hintMask(q, Move.HINT_COLOUR, colour));
+          break;
+        }
+      }
+      if(discards){
+        //cards with another copy left go before the last copies
+        for(int pass = 0; pass<2; pass++){
+          for(int i = 0; i<handSize; i++){
+            int c = s.getCard(p, i);
+            if(c==CompactState.EMPTY || (dead>>>c&1)!=0 || (discarded>>>c&1)!=0) continue;
+            boolean last = gone(c)+1>=Card.count(c);
+            if(last!=(pass==1)) continue;
+            discarded|=1<<c;
+            list[n++] = Move.discard(p, i);
+          }
+        }
+      }
+      else if(s.getFuseTokens()>1 || n==0){
+        //with every hint token in hand a card can only be thrown away by misplaying it
+        boolean deadTried = false;
+        for(int i = 0; i<handSize; i++){
+          int c = s.getCard(p, i);
+          if(c==CompactState.EMPTY || (played>>>c&1)!=0) continue;
+          if((dead>>>c&1)!=0){
+            if(deadTried) continue;
+            deadTried = true;
+          }
+          played|=1<<c;
+          list[n++] = Move.play(p, i);
+        }
+      }
+      return n;
+    }
+  }
+
+  /**
+   * The bounds of the best score of each deal solved.
+   * The bounds are equal for a deal that was solved within the node limit.
+   **/
+  public static class Result{
+    /**The rules of the deals**/
+    private final GameConfig rules;
+    private final byte[] lower, upper;
+    private long nodes;
+    private int solved;
+
+    private Result(GameConfig rules, int deals){
+      this.rules = rules;
+      lower = new byte[deals];
+      upper = new byte[deals];
+    }
+
+    //records the bounds of a deal
+    private synchronized void set(int deal, int low, int high, long searched){
+      lower[deal] = (byte)low;
+      upper[deal] = (byte)high;
+      nodes+=searched;
+      if(low==high) solved++;
+    }
+
+    /**@return the number of deals**/
+    public int getDeals(){return lower.length;}
+
+    /**
+     * Gets the lower bound of a deal
+     * @param deal the index of the deal
+     * @return the best score of a game the search reached
+     **/
+    public synchronized int getLower(int deal){return lower[deal];}
+
+    /**
+     * Gets the upper bound of a deal
+     * @param deal the index of the deal
+     * @return a score no game of the deal can beat, which is its best score if the deal was solved
+     **/
+    public synchronized int getUpper(int deal){return upper[deal];}
+
+    /**@return the number of deals whose best score was found**/
+    public synchronized int getSolved(){return solved;}
+
+    /**@return the number of nodes searched over all the deals**/
+    public synchronized long getNodes(){return nodes;}
+
+    /**@return the statistics of the upper bounds of the deals**/
+    public synchronized ScoreStatistics getUpperStatistics(){
+      ScoreStatistics stats = new ScoreStatistics(rules);
+      for(byte b: upper) stats.add(b);
+      return stats;
+    }
+
+    /**@return the statistics of the lower bounds of the deals**/
+    public synchronized ScoreStatistics getLowerStatistics(){
+      ScoreStatistics stats = new ScoreStatistics(rules);
+      for(byte b: lower) stats.add(b);
+      return stats;
+    }
+
+    /**
+     * Returns a summary of the bounds.
+     **/
+    public synchronized String toString(){
+      return String.format("%d deals, %d solved, %d nodes%nUpper bounds: %s%nLower bounds: %s",
+        lower.length, solved, nodes, getUpperStatistics(), getLowerStatistics());
+    }
+  }
+
+  /**
+   * This main method solves deals for three players on every core, and prints the bounds.
+   * The number of deals may be given as the first argument.
+   **/
+  public static void main(String[] args){
+    int deals = args.length>0?Integer.parseInt(args[0]):1000;
+    Solver solver = new Solver(new SplittableRandom().nextLong());
+    long start = System.nanoTime();
+    Result result = solver.solve(3, deals);
+    double seconds = (System.nanoTime()-start)/1e9;
+    System.out.println(result);
+    System.out.printf("%.2fs%n", seconds);
+  }
+}
@@ -5,6 +5,15 @@ import java.util.*;
  * The state is designed as an immutable object.
  * Agents are able to get the current game state, 
  * and all previous moves using a state object.
+ * Previous states are not kept: the states of a game share a log of the moves made,
+ * and previous states are rebuilt from the log when they are requested.
+ * The log may be limited to a window of recent moves, to bound the memory used by each game.
+ * The deck is owned by the states of a game, as an array of card ids and a cursor:
+ * the array is never modified, so it is shared by every state of the game, and a state is copied without copying the deck.
+ * A global state can therefore be played on with nextState(Action) by any number of threads, each following its own line of play.
+ * Local states do not keep the deck, only the number of cards left in it.
+ * Each state carries a 64-bit Zobrist key of its position, which nextState updates in constant time,
+ * so states can be cached by search agents: equal states have equal keys, and hashCode is taken from the key.
  * @author Tim French
  **/
 
@@ -27,77 +36,197 @@ public class State implements Cloneable{
   private int fuse=0;
   /**The observer of this state. This allows hidden information to be redacted**/
   private int observer=-1;
-  /**The previous State of the game, so that all states are accessible back to the first state (with a null previous state)**/
-  private State previousState;
-  /**A list of all moves made so far in the game, in the order they were played**/
+  /**The log of moves made in the game, so that previous states can be rebuilt**/
+  private History history;
+  /**The last move made in the game**/
   private Action previousAction;
+  /**The packed record of the last move, describing the information it removed from the state**/
+  private int previousRecord;
   /**The index of the next player to move**/
   private int nextPlayer=-1;
   /**The fnal play of the game (for when the deck runs out)**/
   private int finalAction=-1;
+  /**The sum of the highest value cards in each firework, maintained by nextState**/
+  private int score=0;
+  /**The number of fireworks that have been completed**/
+  private int completedFireworks=0;
+  /**Whether the game has ended, maintained by nextState**/
+  private boolean over=false;
+  /**The rules of the game**/
+  private GameConfig config;
+  /**The ids of the cards of the deck, in the order they are drawn, shared by the states of the game, or null in a local state**/
+  private byte[] deck;
+  /**The position in the deck of the next card to be drawn**/
+  private int deckPos;
+  /**The most hint tokens there can be, and the highest score, from the rules**/
+  private int maxHints, maxScore;
+  /**The Zobrist key of the position without the discards, and the sum of the numbers of the discards (see Zobrist)**/
+  private long key, discardSum;
 
   /**A constructor for the first state in the game
    * @param players the names of the players in the game, in an array by index
    * @param deck the shuffled deck of cards to be used for the deal
    * @throws IllegalArgumentException if arguments are null, or the wrong size**/
   public State(String[] players, Stack<Card> deck) throws IllegalArgumentException{
-    if(players==null || players.length<2 || players.length >5 || deck == null || deck.size() !=50)
+    this(players, deck, History.UNBOUNDED);
+  }
+
+  /**A constructor for the first state in the game, keeping only a limited number of previous states
+   * @param players the names of the players in the game, in an array by index
+   * @param deck the shuffled deck of cards to be used for the deal
+   * @param historyWindow the number of previous states that can be reached with getPreviousState from any state
+   * @throws IllegalArgumentException if arguments are null, or the wrong size, or the window is negative**/
+  public State(String[] players, Stack<Card> deck, int historyWindow) throws IllegalArgumentException{
+    this(GameConfig.STANDARD, players, deck, historyWindow);
+  }
+
+  /**A constructor for the first state in a variant of the game, keeping only a limited number of previous states
+   * @param config the rules of the game
+   * @param players the names of the players in the game, in an array by index
+   * @param deck the shuffled deck of cards to be used for the deal, with every card of the variant's deck
+   * @param historyWindow the number of previous states that can be reached with getPreviousState from any state
+   * @throws IllegalArgumentException if arguments are null, or the wrong size, or the window is negative**/
+  public State(GameConfig config, String[] players, Stack<Card> deck, int historyWindow) throws IllegalArgumentException{
+    if(config==null || players==null || players.length<2 || players.length >5 || deck == null || deck.size() !=config.getDeckSize())
       throw new IllegalArgumentException("incorrect parameters");
+    if(players.length*config.getHandSize(players.length)>=deck.size())
+      throw new IllegalArgumentException("The deck must have cards left after the deal");
+    setConfig(config);
+    history = new History(historyWindow);
     this.players = players.clone();
     discards = new Stack<Card>();
     fireworks = new HashMap<Colour,Stack<Card>>();
     for(Colour c: Colour.values())fireworks.put(c,new Stack<Card>());
-    hands = new Card[players.length][players.length>3?4:5];
+    this.deck = new byte[deck.size()];
+    for(int i = 0; i<this.deck.length; i++) this.deck[i] = (byte)deck.get(this.deck.length-1-i).id();
+    hands = new Card[players.length][config.getHandSize(players.length)];
     for(int i = 0; i<hands.length; i++)
-      for(int j = 0; j<hands[i].length; j++) 
+      for(int j = 0; j<hands[i].length; j++){
         hands[i][j]=deck.pop();
+        deckPos++;
+      }
     order = 0;
-    hints = 8;
-    fuse = 3;
+    hints = config.getHintTokens();
+    fuse = config.getFuseTokens();
     observer = -1;  
     nextPlayer = 0;
     finalAction = -1;
+    rehash();
+  }
+
+  /**A constructor for a snapshot of a compact state, with no record of the moves before it.
+   * The order of the discards is not kept by a compact state, so they are stacked in order of card id.
+   * @param c the compact state**/
+  State(CompactState c){
+    setConfig(c.getConfig());
+    deck = c.deckIds();
+    deckPos = deck.length-c.getDeckSize();
+    players = c.getPlayers();
+    history = new History(History.UNBOUNDED, c.getOrder());
+    discards = new Stack<Card>();
+    for(int id = 0; id<Card.IDS; id++)
+      for(int k = 0; k<c.getDiscards(id); k++) discards.push(Card.fromId(id));
+    fireworks = new HashMap<Colour,Stack<Card>>();
+    for(Colour col: Colour.values()){
+      Stack<Card> fw = new Stack<Card>();
+      for(int v = 1; col.ordinal()<config.getSuits() && v<=c.getFirework(col.ordinal()); v++) fw.push(Card.of(col, v));
+      fireworks.put(col, fw);
+      score+=fw.size();
+      if(fw.size()==5) completedFireworks++;
+    }
+    hands = new Card[players.length][c.getHandSize()];
+    for(int p = 0; p<hands.length; p++)
+      for(int i = 0; i<hands[p].length; i++){
+        int id = c.getCard(p, i);
+        hands[p][i] = id==CompactState.EMPTY?null:Card.fromId(id);
+      }
+    order = c.getOrder();
+    hints = c.getHintTokens();
+    fuse = c.getFuseTokens();
+    observer = -1;
+    nextPlayer = order%players.length;
+    finalAction = c.getFinalActionIndex();
+    over = c.gameOver();
+    rehash();
+  }
+
+  //keeps the rules, and the limits read on every move
+  private void setConfig(GameConfig config){
+    this.config = config;
+    maxHints = config.getHintTokens();
+    maxScore = config.getMaxScore();
   }
 
+  //computes the key of the state from scratch
+  private void rehash(){
+    key = Zobrist.hints(hints)^Zobrist.fuse(fuse)^Zobrist.next(nextPlayer)^Zobrist.observer(observer)^Zobrist.left(turnsLeft());
+    for(int p = 0; p<hands.length; p++)
+      for(int i = 0; i<hands[p].length; i++)
+        key^=p!=observer?Zobrist.hand(p, i, hands[p][i]):hands[p][i]==null?0:Zobrist.hidden(p, i);
+    for(Colour c: Colour.values()) key^=Zobrist.firework(c.ordinal(), fireworks.get(c).size());
+    discardSum = 0;
+    for(Card c: discards) discardSum+=Zobrist.discard(c);
+  }
+
+  //the number of moves left once the deck has run out, or -1
+  private int turnsLeft(){return finalAction==-1?-1:finalAction-order;}
+
   /**
-   *A method to create the next state from the given state and a move.
+   *A method to create the next state from the given state and a move, drawing from a deck held by the caller.
+   *The card drawn is the next card of the state's own deck, and a card is popped from the caller's deck to keep it in step,
+   *so the caller's deck must be the one the game was dealt from.
    *This method will only work if no hand has been hidden (since it allows agents to infer the result of actions).
-   *@param deck the deck of cards
+   *@param deck the deck of cards, which loses a card whenever one is drawn
    *@param action the action made
    *@throws IllegalActionException if the move is not legal in the current state, or one hand has been hidden.
    **/
   public State nextState(Action action, Stack<Card> deck) throws IllegalActionException{
+   State s = nextState(action);
+   for(int i = deckPos; i<s.deckPos && !deck.isEmpty(); i++) deck.pop();
+   return s;
+  }
+
+  /**
+   *A method to create the next state from the given state and a move, drawing from the state's own deck.
+   *This state is not changed, so several lines of play may be followed from it, in parallel if need be.
+   *This method will only work if no hand has been hidden (since it allows agents to infer the result of actions).
+   *@param action the action made
+   *@throws IllegalActionException if the move is not legal in the current state, or one hand has been hidden.
+   **/
+  public State nextState(Action action) throws IllegalActionException{
    if(!legalAction(action)) throw new IllegalActionException("Invalid action!: "+action);
    if(gameOver()) throw new IllegalActionException("Game Over!");
    if(observer!=-1) throw new IllegalActionException("Next state unavailable!");
    State s = (State)this.clone();
+   Card c = null;
+   boolean played = false;
    switch(action.getType()){
      case PLAY:
-       Card c = hands[action.getPlayer()][action.getCard()];
+       c = hands[action.getPlayer()][action.getCard()];
        Stack<Card> fw = fireworks.get(c.getColour());
        if((fw.isEmpty() && c.getValue() == 1) || (!fw.isEmpty() && fw.peek().getValue()==c.getValue()-1)){
+         played = true;
          s.fireworks.get(c.getColour()).push(c);
-         if(s.fireworks.get(c.getColour()).size()==5 && s.hints<8) s.hints++;
+         s.key^=Zobrist.firework(c.getColour().ordinal(), fw.size())^Zobrist.firework(c.getColour().ordinal(), fw.size()+1);
+         s.score++;
+         if(s.fireworks.get(c.getColour()).size()==5){
+           s.completedFireworks++;
+           if(s.hints<maxHints) s.hints++;
+         }
        }
        else{
          s.discards.push(c);
+         s.discardSum+=Zobrist.discard(c);
          s.fuse--;
        }
-       if(!deck.isEmpty()) s.hands[action.getPlayer()][action.getCard()] = deck.pop();
-       if(deck.isEmpty()){
-        if(finalAction==-1) s.finalAction = order+players.length;
-        s.hands[action.getPlayer()][action.getCard()] = null;
-       }
+       s.draw(action.getPlayer(), action.getCard());
        break;  
      case DISCARD:
        c = hands[action.getPlayer()][action.getCard()];
        s.discards.push(c);
-       if(!deck.isEmpty()) s.hands[action.getPlayer()][action.getCard()] = deck.pop();
-       if(deck.isEmpty()){
-        if(finalAction==-1) s.finalAction = order+players.length;
-        s.hands[action.getPlayer()][action.getCard()] = null;
-       }
-       if(hints<8) s.hints++;
+       s.discardSum+=Zobrist.discard(c);
+       s.draw(action.getPlayer(), action.getCard());
+       if(hints<maxHints) s.hints++;
        break;
      case HINT_COLOUR: 
        s.hints--; 
@@ -109,11 +238,26 @@ public class State implements Cloneable{
    }
    s.order++;
    s.previousAction = action;
+   s.previousRecord = History.pack(c, played, hints, fuse, finalAction==-1);
+   s.history = history.record(order, action, s.previousRecord);
    s.nextPlayer = (nextPlayer+1)%players.length; 
-   s.previousState = this;  
+   s.over = s.order==s.finalAction || s.fuse==0 || s.score==maxScore;
+   s.key^=Zobrist.hints(hints)^Zobrist.hints(s.hints)^Zobrist.fuse(fuse)^Zobrist.fuse(s.fuse)
+     ^Zobrist.next(nextPlayer)^Zobrist.next(s.nextPlayer)^Zobrist.left(turnsLeft())^Zobrist.left(s.turnsLeft());
    return s;
   }
 
+  //replaces a card played or discarded with the next card of the deck: the card that empties the deck is not kept
+  private void draw(int player, int slot){
+    key^=Zobrist.hand(player, slot, hands[player][slot]);
+    if(deckPos<deck.length) hands[player][slot] = Card.fromId(deck[deckPos++]);
+    if(deckPos==deck.length){
+      if(finalAction==-1) finalAction = order+players.length;
+      hands[player][slot] = null;
+    }
+    key^=Zobrist.hand(player, slot, hands[player][slot]);
+  }
+
   /**
    *A method to create a local state from a global state. 
    *That is, if there is no current observer, the specified observer will have their hand hidden from them.
@@ -124,6 +268,10 @@ public class State implements Cloneable{
     if(this.observer==-1 && observer>=0 && observer < hands.length){
       State local = (State) this.clone();
       local.observer=observer;
+      local.deck = null;
+      local.key^=Zobrist.observer(observer);
+      for(int i = 0; i<hands[observer].length; i++)
+        if(hands[observer][i]!=null) local.key^=Zobrist.hand(observer, i, hands[observer][i])^Zobrist.hidden(observer, i);
       return local;
     }
     else throw new IllegalActionException("Hand already hidden, or observer out of bounds");
@@ -132,39 +280,97 @@ public class State implements Cloneable{
   /**
    * Test the legality of a Action.
    * If the observer of a state is specified, this mathod can only be applied to actions performed by the observer. 
+   * Plays and discards of empty slots, discards when there are as many hint tokens as the game allows, and hints of colours not in the game, are not legal.
    * @param a the move to be tested
    * @return true if the move is legal in the current game state.
-   * @throws IllegalActionException
+   * @throws IllegalActionException if the state is local and the action is not the observer's
    **/
   public boolean legalAction(Action a) throws IllegalActionException{
     if(observer!=-1 && a.getPlayer()!=observer) throw new IllegalActionException("Local states may only test the legality of observers moves");
     if(a.getPlayer()!=nextPlayer) return false;
     switch(a.getType()){
       case PLAY:
-        return (a.getCard()>=0 && a.getCard()<hands[nextPlayer].length); 
+        return (a.getCard()>=0 && a.getCard()<hands[nextPlayer].length && hands[nextPlayer][a.getCard()]!=null);
       case DISCARD: 
-        if(hints==8) throw new IllegalActionException("Discards cannot be made when there are 8 hint tokens");
-        return (a.getCard()>=0 && a.getCard()<hands[nextPlayer].length);
+        return hints<maxHints && (a.getCard()>=0 && a.getCard()<hands[nextPlayer].length && hands[nextPlayer][a.getCard()]!=null);
       case HINT_COLOUR:
-        if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>players.length || a.getHintReceiver() == a.getPlayer()) return false; 
-        boolean[] hint = new boolean[hands[a.getHintReceiver()].length];
-        for(int i = 0; i<hint.length; i++){
-          Card c = hands[a.getHintReceiver()][i];
-          hint[i] = (c==null?null:c.getColour())==a.getColour();
-        }
-        return Arrays.equals(hint, a.getHintedCards());
+        if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>=players.length || a.getHintReceiver() == a.getPlayer()) return false; 
+        if(a.getColour().ordinal()>=config.getSuits()) return false;
+        Card[] hand = hands[a.getHintReceiver()];
+        if(a.getHintSize()!=hand.length) return false;
+        int mask = 0;
+        for(int i = 0; i<hand.length; i++)
+          if(hand[i]!=null && hand[i].getColour()==a.getColour()) mask|=1<<i;
+        return mask==a.getHintMask();
       case HINT_VALUE:
-        if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>players.length || a.getHintReceiver() == a.getPlayer()) return false; 
-        hint = new boolean[hands[a.getHintReceiver()].length];
-        for(int i = 0; i<hint.length; i++){
-          Card c = hands[a.getHintReceiver()][i];
-          hint[i] = (c==null?-1:c.getValue())==a.getValue();
-        }
-        return Arrays.equals(hint, a.getHintedCards());
+        if(hints==0 || a.getHintReceiver() <0 || a.getHintReceiver()>=players.length || a.getHintReceiver() == a.getPlayer()) return false; 
+        hand = hands[a.getHintReceiver()];
+        if(a.getHintSize()!=hand.length) return false;
+        mask = 0;
+        for(int i = 0; i<hand.length; i++)
+          if(hand[i]!=null && hand[i].getValue()==a.getValue()) mask|=1<<i;
+        return mask==a.getHintMask();
       default: return false;
     }
   }
   
+  /**
+   * Lists the legal moves of the next player, encoded as in Move, without allocating.
+   * Plays come first, then discards, then hints, with one colour hint for each colour and one value hint for each value in the hintee's hand,
+   * in the same order as CompactState.legalMoves.
+   * If the state is local, it must be the observer's turn, as the hints the observer could be given are hidden.
+   * @param moves an array of at least CompactState.MAX_MOVES elements, to be filled with encoded moves
+   * @return the number of legal moves, or 0 if the game is over
+   * @throws IllegalActionException if the state is local and it is not the observer's turn
+   **/
+  public int legalMoves(int[] moves) throws IllegalActionException{
+    if(observer!=-1 && observer!=nextPlayer) throw new IllegalActionException("Local states may only list the observer's moves");
+    if(over) return 0;
+    int n = 0;
+    Card[] hand = hands[nextPlayer];
+    for(int i = 0; i<hand.length; i++) if(hand[i]!=null) moves[n++] = Move.play(nextPlayer, i);
+    if(hints<maxHints) for(int i = 0; i<hand.length; i++) if(hand[i]!=null) moves[n++] = Move.discard(nextPlayer, i);
+    if(hints>0){
+      for(int p = 0; p<players.length; p++){
+        if(p==nextPlayer) continue;
+        int colours = 0, values = 0;
+        for(Card c: hands[p]){
+          if(c==null) continue;
+          colours|=1<<c.getColour().ordinal();
+          values|=1<<c.getValue();
+        }
+        for(int c = 0; colours!=0; c++, colours>>>=1)
+          if((colours&1)!=0) moves[n++] = Move.hintColour(nextPlayer, p, c, hintMask(p, Move.HINT_COLOUR, c));
+        for(int v = 0; values!=0; v++, values>>>=1)
+          if((values&1)!=0) moves[n++] = Move.hintValue(nextPlayer, p, v, hintMask(p, Move.HINT_VALUE, v));
+      }
+    }
+    return n;
+  }
+
+  //the cards of a hand matching a hint, as a mask
+  private int hintMask(int hintee, int type, int hint){
+    int mask = 0;
+    Card[] hand = hands[hintee];
+    for(int i = 0; i<hand.length; i++){
+      Card c = hand[i];
+      if(c!=null && (type==Move.HINT_COLOUR?c.getColour().ordinal():c.getValue())==hint) mask|=1<<i;
+    }
+    return mask;
+  }
+
+  /**
+   * Converts an encoded move to an action in this state.
+   * @param move a move encoded as in Move, such as one listed by legalMoves
+   * @return the action, with the name of the player making it
+   * @throws IllegalActionException if the move is badly formed
+   **/
+  public Action toAction(int move) throws IllegalActionException{
+    int player = Move.player(move), hintee = Move.isHint(move)?Move.hintee(move):player;
+    if(player>=players.length || hintee>=players.length) throw new IllegalActionException("Player out of bounds");
+    return Move.toAction(move, players[player], hands[hintee].length);
+  }
+
   /**
    * Gives and array of all the player names in the game.
    * @return an array containing the naems of the players in the game, by ther index in the game.
@@ -185,6 +391,36 @@ public class State implements Cloneable{
     return hands[player].clone();
   }
 
+  //tests if a hand slot holds a card, which is public information even for the observer's hand
+  boolean hasCard(int player, int pos){return hands[player][pos]!=null;}
+
+  //the card in a hand slot, ignoring the observer, for the engine's own listeners
+  Card cardAt(int player, int pos){return hands[player][pos];}
+
+  //the cards of the deck in the order they are drawn, or null in a local state
+  byte[] deckIds(){return deck;}
+
+  //the number of slots in each hand
+  int handSize(){return hands[0].length;}
+
+  //the number of cards in the firework of a colour
+  int fireworkHeight(Colour c){return fireworks.get(c).size();}
+
+  //the action made from the state of order k, or null if it is not in the history window
+  Action actionAt(int k){
+    if(k==order-1) return previousAction;
+    History.Entry e = history.get(k, order);
+    return e==null?null:e.action;
+  }
+
+  //the card removed from a hand by the move made from the state of order k, 
+  //or null if the move was a hint or is not in the history window
+  Card removedAt(int k){
+    if(k==order-1) return previousAction==null?null:History.removed(previousRecord);
+    History.Entry e = history.get(k, order);
+    return e==null?null:History.removed(e.record);
+  }
+
   /**
    * Gives a players name
    * @return the name of the specified player
@@ -193,11 +429,56 @@ public class State implements Cloneable{
 
   /**
    * Gives the previous state of the game, allowing agents to determine the recent actions in the game.
-   * @return the previous state, with the same observer as the current state.
+   * The state is rebuilt from the log of moves, so each call returns a new object, 
+   * and this state is not modified: states may be shared between threads, and their histories read concurrently.
+   * The oldest state in the history window does not know the action that led to it.
+   * @return the previous state, with the same observer as the current state, 
+   * or null if this is the first state or the previous state is outside the history window.
    **/
   public State getPreviousState(){
-    State s = previousState;
-    s.observer = observer;
+    if(previousAction==null || history.get(order-1, order)==null) return null;
+    State s = (State)this.clone();
+    s.order--;
+    s.history = history.pin(order);
+    s.nextPlayer = (nextPlayer+players.length-1)%players.length;
+    s.hints = History.hints(previousRecord);
+    s.fuse = History.fuse(previousRecord);
+    s.over = false;
+    Card c = History.removed(previousRecord);
+    //a play or discard draws a card unless the deck had already run out, which is when the final action was known
+    if(c!=null && History.finalUnknown(previousRecord)) s.deckPos--;
+    if(History.finalUnknown(previousRecord)) s.finalAction = -1;
+    if(c!=null){
+      try{
+        s.hands[previousAction.getPlayer()][previousAction.getCard()] = c;
+      }
+      catch(IllegalActionException e){return null;}
+      if(History.played(previousRecord)){
+        s.fireworks.get(c.getColour()).pop();
+        s.score--;
+        if(c.getValue()==5) s.completedFireworks--;
+      }
+      else s.discards.pop();
+    }
+    History.Entry e = history.get(s.order-1, s.order);
+    s.previousAction = e==null?null:e.action;
+    s.previousRecord = e==null?0:e.record;
+    s.rehash();
+    return s;
+  }
+
+  /**
+   * Gives an earlier state of the game, with the same observer as this state.
+   * Like getPreviousState, this state is not modified.
+   * @param moves the number of moves to go back
+   * @return the state the given number of moves before this one, 
+   * or null if that is before the first state or outside the history window.
+   * @throws IllegalArgumentException if moves is negative
+   **/
+  public State getPreviousState(int moves) throws IllegalArgumentException{
+    if(moves<0) throw new IllegalArgumentException("moves must not be negative");
+    State s = this;
+    for(int i = 0; i<moves && s!=null; i++) s = s.getPreviousState();
     return s;
   }
 
@@ -211,14 +492,14 @@ public class State implements Cloneable{
   /**
    * Gets the last action performed in the game, by the specified player
    * @return the last action performed by the given player, prior to this state.
-   * @throws ArrayIndexOUtOfBoundsException if the specified player has not yet performed an action
+   * @throws ArrayIndexOUtOfBoundsException if the specified player has not yet performed an action, within the history window
    **/
   public Action getPreviousAction(int player){
-    State s = this;
-    while(s!=null && s.previousAction !=null && s.previousAction.getPlayer()!=player)
-      s = s.previousState;
-    if(s==null || s.previousAction==null) throw new ArrayIndexOutOfBoundsException("Player has not played yet");
-    else return s.previousAction;
+    if(previousAction!=null && previousAction.getPlayer()==player) return previousAction;
+    History.Entry e;
+    for(int k = order-2; (e = history.get(k, order))!=null; k--)
+      if(e.action.getPlayer()==player) return e.action;
+    throw new ArrayIndexOutOfBoundsException("Player has not played yet");
   }
 
   /**
@@ -228,12 +509,7 @@ public class State implements Cloneable{
    * @return the card played in the previous action, 
    * or null if there is no previous action, or the action was a hint.
    * */
-  public Card previousCardPlayed(){
-    try{
-      return previousState.getHand(previousAction.getPlayer())[previousAction.getCard()];
-    }
-    catch(Exception e){return null;}
-  }
+  public Card previousCardPlayed(){return previousAction==null?null:History.removed(previousRecord);}
 
 
   /** 
@@ -295,20 +571,74 @@ public class State implements Cloneable{
    * Get the current score
    * @return the sum of the highest value cards in each firework
    **/
-  public int getScore(){
-    int score = 0;
-    if(fuse==0) return 0;
-    for(Colour c: Colour.values()) 
-      if(!fireworks.get(c).isEmpty())score+=fireworks.get(c).peek().getValue();
-    return score;
-  }
+  public int getScore(){return fuse==0?0:score;}
+
+  /**
+   * Get the number of cards left in the deck
+   * @return the number of cards that can still be drawn
+   **/
+  public int getDeckSize(){return config.getDeckSize()-deckPos;}
+
+  /**
+   * Get the rules of the game
+   * @return the configuration the game was created with
+   **/
+  public GameConfig getConfig(){return config;}
+
+  /**
+   * Get the number of fireworks that have been completed
+   * @return the number of fireworks with all five cards played
+   **/
+  public int getCompletedFireworks(){return completedFireworks;}
 
   /**
    * Tests if the game is over
    * @return true if all fireworks have been made, the deck has run out, or a fues has exploded.
    **/
-  public boolean gameOver(){
-    return (order==finalAction || fuse == 0 || getScore()==25);
+  public boolean gameOver(){return over;}
+
+  /**
+   * Gets the Zobrist key of the position, for caching states in a TranspositionTable.
+   * The key covers the cards in each slot of each hand (only whether there is a card, in the observer's hand), the fireworks, the discards,
+   * the hint and fuse tokens, the next player, the observer, and the moves left once the deck has run out.
+   * It is kept up to date by nextState at constant cost per move.
+   * @return a 64-bit key, equal for equal states
+   **/
+  public long getZobristKey(){return key^discardSum;}
+
+  /**
+   * States are equal if they are the same position in games with the same rules and number of players, and have the same observer.
+   * The features compared are those of getZobristKey: the order the discards were made in, the moves that led to the state,
+   * the names of the players, and the order of the cards left in the deck, which no player can see, are not compared.
+   * The cards of the observer's hand are not compared either, only which of its slots hold a card.
+   **/
+  public boolean equals(Object o){
+    if(o==this) return true;
+    if(!(o instanceof State)) return false;
+    State s = (State)o;
+    if(s.key!=key || s.discardSum!=discardSum || s.players.length!=players.length || !s.config.equals(config)) return false;
+    if(s.observer!=observer || s.nextPlayer!=nextPlayer || s.hints!=hints || s.fuse!=fuse || s.turnsLeft()!=turnsLeft()) return false;
+    for(Colour c: Colour.values()) if(s.fireworks.get(c).size()!=fireworks.get(c).size()) return false;
+    for(int p = 0; p<hands.length; p++){
+      if(s.hands[p].length!=hands[p].length) return false;
+      for(int i = 0; i<hands[p].length; i++){
+        Card a = hands[p][i], b = s.hands[p][i];
+        if(a==null?b!=null:b==null || (p!=observer && !a.equals(b))) return false;
+      }
+    }
+    if(s.discards.size()!=discards.size()) return false;
+    int[] counts = new int[Card.IDS];
+    for(Card c: discards) counts[c.id()]++;
+    for(Card c: s.discards) if(--counts[c.id()]<0) return false;
+    return true;
+  }
+
+  /**
+   * @return a hash code taken from the Zobrist key
+   **/
+  public int hashCode(){
+    long k = getZobristKey();
+    return (int)(k^k>>>32);
   }
 
   /**
@@ -335,19 +665,19 @@ public class State implements Cloneable{
    * and the last action.
    * */
   public String toString(){
-    String ret = "State: "+order+"\n";
-    ret+="Last move: "+previousAction+"\n";
-    ret+="Players' hands:\n";
+    StringBuilder ret = new StringBuilder("State: ").append(order).append('\n');
+    ret.append("Last move: ").append(previousAction).append('\n');
+    ret.append("Players' hands:\n");
     for(int i = 0; i<players.length; i++){
-      ret+=players[i]+" ("+i+"): ";
-      for(Card c: hands[i])ret+=c+" ";
-      ret+="\n";
+      ret.append(players[i]).append(" (").append(i).append("): ");
+      for(Card c: hands[i])ret.append(c).append(' ');
+      ret.append('\n');
     }
-    ret+="Fireworks:\n";
-    for(Colour c: Colour.values())
-      ret+=c+"  "+(fireworks.get(c).isEmpty()? "-" : fireworks.get(c).peek()) +"\n";
-    ret+= "Hints: "+hints+"\nFuse: "+fuse+"\n";
-    return ret;
+    ret.append("Fireworks:\n");
+    for(Colour c: config.getColours())
+      ret.append(c).append("  ").append(fireworks.get(c).isEmpty()? "-" : fireworks.get(c).peek()).append('\n');
+    ret.append("Hints: ").append(hints).append("\nFuse: ").append(fuse).append('\n');
+    return ret.toString();
   }
 
 }
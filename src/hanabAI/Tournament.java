@@ -0,0 +1,221 @@
+package hanabAI;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class for running many games of Hanabi in parallel.
+ * Games are split into batches that are played on a fork-join pool, 
+ * each game using a fresh Hanabi engine and a fresh line-up of agents from the factory.
+ * Each batch accumulates its own scores, which are merged into the running totals when the batch is complete,
+ * so the statistics may be read while the tournament is in progress.
+ * A game that throws an exception is counted as a crash, with the seed of the first, and the rest of the tournament goes on.
+ * The deck for game i is shuffled from the seed getSeed()+i, so any game can be replayed, 
+ * and tournaments with the same seed deal the same cards to different line-ups.
+ * */
+public class Tournament{
+
+  /**The number of games played sequentially by each task**/
+  private static final int BATCH = 64;
+
+  private final AgentFactory factory;
+  private final ForkJoinPool pool;
+  private final long seed;
+  /**The index of the next game to be played, so repeated calls to play deal new games**/
+  private long nextGame = 0;
+  /**The statistics of the games played under the current rules, replaced when the rules change**/
+  private ScoreStatistics stats = new ScoreStatistics();
+  /**The channel every game is recorded to, or null**/
+  private volatile java.nio.channels.WritableByteChannel log;
+  /**The channel every game is archived to, or null**/
+  private volatile java.nio.channels.WritableByteChannel archive;
+  /**The monitor timing every move, or null**/
+  private volatile LatencyMonitor monitor;
+  /**The rules of the games played**/
+  private volatile GameConfig config = GameConfig.STANDARD;
+  /**The time budgets of each game, in milliseconds, as for Hanabi.setTimeBudget**/
+  private volatile long moveMillis, gameMillis;
+  private volatile boolean forfeit;
+
+  /**
+   * Creates a tournament using every available core.
+   * @param factory the factory creating the agents for each game
+   * */
+  public Tournament(AgentFactory factory){
+    this(factory, ForkJoinPool.commonPool(), new java.util.SplittableRandom().nextLong());
+  }
+
+  /**
+   * Creates a tournament using every available core, with reproducible deals.
+   * @param factory the factory creating the agents for each game
+   * @param seed the seed for the deck of the first game
+   * */
+  public Tournament(AgentFactory factory, long seed){
+    this(factory, ForkJoinPool.commonPool(), seed);
+  }
+
+  /**
+   * Creates a tournament using the given pool.
+   * @param factory the factory creating the agents for each game
+   * @param pool the pool the games are played on
+   * @param seed the seed for the deck of the first game
+   * */
+  public Tournament(AgentFactory factory, ForkJoinPool pool, long seed){
+    this.factory = factory;
+    this.pool = pool;
+    this.seed = seed;
+  }
+
+  /**
+   * Gets the seed of the first game
+   * @return the seed used to shuffle the deck of the first game
+   * */
+  public long getSeed(){return seed;}
+
+  /**
+   * Sets the rules of the games played from now on.
+   * The deck for game i of a variant is shuffled from the seed getSeed()+i with GameConfig.shuffledDeck.
+   * Scores of different variants are not comparable, so the first play under new rules starts new statistics.
+   * @param config the rules, which are GameConfig.STANDARD by default
+   * */
+  public void setConfig(GameConfig config){this.config = config;}
+
+  /**
+   * Records every game played from now on to a channel, with a GameRecorder for each batch.
+   * Each batch writes its games when it is complete, so games appear in the channel in batches, not in order of their index.
+   * @param log the channel to write the records to, or null to stop recording
+   * */
+  public void setLog(java.nio.channels.WritableByteChannel log){this.log = log;}
+
+  /**
+   * Archives every game played from now on to a channel, with a GameArchiveWriter for each batch.
+   * The deal of each game is stored as its seed.
+   * @param archive the channel to write the archive to, or null to stop archiving
+   * */
+  public void setArchive(java.nio.channels.WritableByteChannel archive){this.archive = archive;}
+
+  /**
+   * Times every move played from now on.
+   * @param monitor the monitor, shared by every game, or null to stop timing
+   * */
+  public void setMonitor(LatencyMonitor monitor){this.monitor = monitor;}
+
+  /**
+   * Limits the time the agents may take in every game played from now on (see Hanabi.setTimeBudget).
+   * @param moveMillis the time allowed for each move, in milliseconds, or 0 for no limit
+   * @param gameMillis the total time allowed to each player for a game, in milliseconds, or 0 for no limit
+   * @param forfeit true if a player over budget forfeits the game, false if its move is replaced
+   * */
+  public void setTimeBudget(long moveMillis, long gameMillis, boolean forfeit){
+    this.moveMillis = moveMillis;
+    this.gameMillis = gameMillis;
+    this.forfeit = forfeit;
+  }
+
+  /**
+   * Plays the given number of games, and blocks until they are complete.
+   * @param games the number of games to play
+   * @return the statistics of all the games played by this tournament so far
+   * */
+  public ScoreStatistics play(long games){
+    long first;
+    GameConfig rules = config;
+    ScoreStatistics total;
+    synchronized(this){
+      first = nextGame;
+      nextGame+=games;
+      if(!stats.getConfig().equals(rules)) stats = new ScoreStatistics(rules);
+      total = stats;
+    }
+    pool.invoke(new Games(first, first+games, rules, total));
+    synchronized(total){return total.copy();}
+  }
+
+  /**
+   * Gets a snapshot of the statistics of all completed batches.
+   * This method may be called from another thread while games are being played.
+   * @return a copy of the statistics so far
+   * */
+  public ScoreStatistics getStatistics(){
+    ScoreStatistics total;
+    synchronized(this){total = stats;}
+    synchronized(total){return total.copy();}
+  }
+
+  /**
+   * Plays a single game with a new line-up of agents.
+   * @param game the index of the game in the tournament
+   * @param rules the rules of the game
+   * @param listener the listener for the game, or null
+   * @return the score for the game, or -1 if an agent made an illegal move
+   * @throws RuntimeException if an agent or the engine crashed
+   * */
+  private int playGame(long game, GameConfig rules, GameListener listener){
+    Hanabi h = new Hanabi(rules, factory.create(), seed+game);
+    h.setListener(listener);
+    h.setTimeBudget(moveMillis, gameMillis, forfeit);
+    return h.play();
+  }
+
+  /**A task playing a range of games, splitting the range until it is a single batch**/
+  private class Games extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    private final long from, to;
+    private final GameConfig rules;
+    /**The statistics the batches are merged into**/
+    private final ScoreStatistics total;
+
+    Games(long from, long to, GameConfig rules, ScoreStatistics total){
+      this.from = from;
+      this.to = to;
+      this.rules = rules;
+      this.total = total;
+    }
+
+    protected void compute(){
+      if(to-from<=BATCH){
+        ScoreStatistics local = new ScoreStatistics(rules);
+        java.nio.channels.WritableByteChannel logChannel = log, archiveChannel = archive;
+        GameRecorder recorder = logChannel==null?null:new GameRecorder(logChannel);
+        GameArchiveWriter writer = archiveChannel==null?null:new GameArchiveWriter(archiveChannel);
+        GameListener listener = GameListener.all(recorder, writer, monitor);
+        for(long i = from; i<to; i++){
+          if(writer!=null) writer.setSeed(seed+i);
+          try{local.add(playGame(i, rules, listener));}
+          catch(RuntimeException e){local.addCrash(seed+i, e);}
+        }
+        try{
+          if(recorder!=null) recorder.flush();
+          if(writer!=null) writer.flush();
+        }
+        catch(java.io.IOException e){throw new java.io.UncheckedIOException(e);}
+        synchronized(total){total.add(local);}
+      }
+      else{
+        long mid = (from+to)>>>1;
+        invokeAll(new Games(from, mid, rules, total), new Games(mid, to, rules, total));
+      }
+    }
+  }
+
+  /**
+   * This main method runs a tournament of three basic agents on every core.
+   * The number of games may be given as the first argument.
+   * */
+  public static void main(String[] args){
+    long games = args.length>0?Long.parseLong(args[0]):10000;
+    Tournament t = new Tournament(new AgentFactory(){
+      public Agent[] create(){
+        return new Agent[]{new agents.BasicAgent(), new agents.BasicAgent(), new agents.BasicAgent()};
+      }
+    });
+    long start = System.nanoTime();
+    ScoreStatistics result = t.play(games);
+    double seconds = (System.nanoTime()-start)/1e9;
+    System.out.print(result);
+    if(result.getFirstCrash()!=null) result.getFirstCrash().printStackTrace();
+    System.out.printf("%d games in %.2fs (%.0f games/s)%n", games, seconds, games/seconds);
+  }
+}
+
+
@@ -0,0 +1,64 @@
+package hanabAI;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size cache of values by 64-bit key, such as State.getZobristKey, which may be shared by any number of threads without locking.
+ * Each key has a single entry, chosen by its low bits, and a new value always replaces the old one, so the table never grows.
+ * An entry is stored as two longs, the value and the key combined with the value by exclusive or.
+ * Each long is written atomically, but a reader may see the two halves of different writes, and then the key does not check out,
+ * so a torn entry reads as a miss rather than as a wrong value.
+ * Keys are not stored in full, and two keys share an entry whenever their low bits are equal,
+ * so a value is only returned for the key it was stored with, except with the vanishing chance of two random keys combining to the same check.
+ **/
+public final class TranspositionTable{
+
+  /**The value and the checked key of each entry, in pairs**/
+  private final AtomicLongArray entries;
+  private final int mask;
+
+  /**
+   * Creates an empty table.
+   * @param bits the number of entries, as a power of 2, from 1 to 28; each entry takes 16 bytes
+   * @throws IllegalArgumentException if the size is out of range
+   **/
+  public TranspositionTable(int bits) throws IllegalArgumentException{
+    if(bits<1 || bits>28) throw new IllegalArgumentException("Table size out of range: "+bits);
+    entries = new AtomicLongArray(2<<bits);
+    mask = (1<<bits)-1;
+  }
+
+  /**@return the number of entries in the table**/
+  public int getCapacity(){return mask+1;}
+
+  /**
+   * Looks up the value stored with a key
+   * @param key the key
+   * @param absent the value to return if the key is not in the table
+   * @return the value last stored with the key, or absent if it has been replaced or never stored
+   **/
+  public long get(long key, long absent){
+    int i = 2*((int)key&mask);
+    long value = entries.get(i), check = entries.get(i+1);
+    return (check^value)==key?value:absent;
+  }
+
+  /**
+   * Stores a value with a key, replacing whatever was in its entry
+   * @param key the key
+   * @param value the value
+   **/
+  public void put(long key, long value){
+    int i = 2*((int)key&mask);
+    entries.lazySet(i, value);
+    entries.lazySet(i+1, key^value);
+  }
+
+  /**
+   * Empties the table.
+   * Entries stored by other threads while the table is being cleared may or may not be kept.
+   **/
+  public void clear(){
+    for(int i = 0; i<entries.length(); i++) entries.lazySet(i, 0);
+  }
+}
@@ -0,0 +1,56 @@
+package hanabAI;
+
+import java.util.SplittableRandom;
+
+/**
+ * The random numbers of the Zobrist hash of a State.
+ * The key of a state is the exclusive or of a number for each feature of the position:
+ * the card in each slot of each hand, the height of each firework, the hint and fuse tokens, the next player, the observer,
+ * and the turns left once the deck has run out.
+ * The features that are empty or zero have the number 0, so they need not be hashed at all.
+ * The discards are a multiset, so their numbers are added rather than combined with exclusive or,
+ * which gives the same sum for any order of discards while telling one copy of a card from two.
+ * The numbers are drawn from a fixed seed, so keys are the same in every run.
+ **/
+final class Zobrist{
+
+  /**The id of a card in a hidden hand, whose presence is known but not its identity**/
+  static final int HIDDEN = Card.IDS;
+
+  private static final long[] HAND = new long[5*5*(Card.IDS+1)], FIREWORK = new long[Colour.values().length*6],
+    DISCARD = new long[Card.IDS], HINTS = new long[32], FUSE = new long[16], NEXT = new long[5], OBSERVER = new long[6], LEFT = new long[7];
+  static{
+    SplittableRandom r = new SplittableRandom(0x2B0B215AL);
+    for(long[] table: new long[][]{HAND, FIREWORK, DISCARD, HINTS, FUSE, NEXT, OBSERVER, LEFT})
+      for(int i = 0; i<table.length; i++) table[i] = r.nextLong();
+  }
+
+  private Zobrist(){}
+
+  /**@return the number of a card in a slot, or 0 if the slot is empty**/
+  static long hand(int player, int slot, Card c){return c==null?0:HAND[(player*5+slot)*(Card.IDS+1)+c.id()];}
+
+  /**@return the number of a hidden card in a slot**/
+  static long hidden(int player, int slot){return HAND[(player*5+slot)*(Card.IDS+1)+HIDDEN];}
+
+  /**@return the number of a firework of the given height**/
+  static long firework(int colour, int height){return height==0?0:FIREWORK[colour*6+height];}
+
+  /**@return the number added to the sum of the discards for each copy of a card discarded**/
+  static long discard(Card c){return DISCARD[c.id()];}
+
+  /**@return the number of the count of hint tokens**/
+  static long hints(int hints){return hints==0?0:HINTS[hints];}
+
+  /**@return the number of the count of fuse tokens**/
+  static long fuse(int fuse){return fuse==0?0:FUSE[fuse];}
+
+  /**@return the number of the next player**/
+  static long next(int player){return NEXT[player];}
+
+  /**@return the number of the observer, or 0 for a global state**/
+  static long observer(int observer){return observer==-1?0:OBSERVER[observer];}
+
+  /**@return the number of the turns left, or 0 if the deck has not run out**/
+  static long left(int turns){return turns==-1?0:LEFT[turns+1];}
+}
@@ -0,0 +1,120 @@
+package hanabAI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that CompactState plays exactly as State does:
+ * seeded games of basic agents are played through State, and after every move the move is applied to a compact copy of the state before it,
+ * which must then agree with the state after it in every hand, the tokens, the fireworks, the deck and the end of the game.
+ * Every move the compact state lists as legal must also be legal in State,
+ * and making and unmaking it must leave the compact state as it was.
+ **/
+public class CompactStateTest{
+
+  /**The number of games played for each number of players and each deck**/
+  private static final int GAMES = 100;
+
+  @Test
+  public void standardGames(){playGames(GameConfig.STANDARD);}
+
+  @Test
+  public void rainbowGames(){playGames(GameConfig.RAINBOW);}
+
+  @Test
+  public void smallVariantGames(){playGames(new GameConfig(4, 3, 2, 3));}
+
+  //plays seeded games for 2 to 5 players, checking every move
+  private static void playGames(GameConfig config){
+    for(int players = 2; players<=5; players++){
+      for(int game = 0; game<GAMES; game++){
+        Agent[] agents = new Agent[players];
+        for(int i = 0; i<players; i++) agents[i] = new agents.BasicAgent();
+        final long seed = 1000L*players+game;
+        Hanabi h = new Hanabi(config, agents, seed);
+        h.setListener(new GameListener(){
+          private State previous;
+          private final int[] moves = new int[CompactState.MAX_MOVES];
+
+          public void gameStarted(State s){
+            checkLegal(s, moves, seed);
+            checkUnmake(s, moves, seed);
+            previous = s;
+          }
+
+          public void moveMade(Action a, State s){
+            CompactState c = CompactState.fromState(previous);
+            try{c.apply(a);}
+            catch(IllegalActionException e){throw new AssertionError("game "+seed+": "+e.getMessage());}
+            compare(c, s, "game "+seed+", state "+s.getOrder());
+            if(!s.gameOver()){
+              checkLegal(s, moves, seed);
+              checkUnmake(s, moves, seed);
+            }
+            previous = s;
+          }
+        });
+        h.play();
+      }
+    }
+  }
+
+  //checks that the compact state's legal moves are legal in State, and as many
+  private static void checkLegal(State s, int[] moves, long seed){
+    CompactState c = CompactState.fromState(s);
+    int n = c.legalMoves(moves);
+    try{
+      for(int i = 0; i<n; i++)
+        assertTrue("game "+seed+", state "+s.getOrder()+": move "+moves[i], s.legalAction(s.toAction(moves[i])));
+      assertEquals("game "+seed+", state "+s.getOrder()+": legal moves", s.legalMoves(new int[CompactState.MAX_MOVES]), n);
+    }
+    catch(IllegalActionException e){throw new AssertionError(e);}
+  }
+
+  //checks that making and unmaking each legal move restores the compact state, and that making it is applying it
+  private static void checkUnmake(State s, int[] moves, long seed){
+    CompactState c = CompactState.fromState(s);
+    String before = snapshot(c);
+    int n = c.legalMoves(moves);
+    for(int i = 0; i<n; i++){
+      String where = "game "+seed+", state "+s.getOrder()+": move "+moves[i];
+      CompactState applied = c.copy();
+      applied.apply(moves[i]);
+      c.make(moves[i]);
+      assertEquals(where+": undo depth", 1, c.getUndoDepth());
+      assertEquals(where+": made", snapshot(applied), snapshot(c));
+      c.unmake();
+      assertEquals(where+": undo depth", 0, c.getUndoDepth());
+      assertEquals(where+": unmade", before, snapshot(c));
+    }
+  }
+
+  //the hands, fireworks and tokens, with the fields toString leaves out
+  private static String snapshot(CompactState c){
+    StringBuilder sb = new StringBuilder(c.toString());
+    sb.append("Deck: ").append(c.getDeckSize()).append("\nFinal action: ").append(c.getFinalActionIndex());
+    sb.append("\nNext player: ").append(c.getNextPlayer()).append("\nScore: ").append(c.getScore()).append("\nDiscards:");
+    for(int id = 0; id<Card.IDS; id++) sb.append(' ').append(c.getDiscards(id));
+    return sb.toString();
+  }
+
+  private static void compare(CompactState c, State s, String where){
+    for(int p = 0; p<c.getNumPlayers(); p++){
+      Card[] hand = s.getHand(p);
+      for(int i = 0; i<c.getHandSize(); i++)
+        assertEquals(where+": player "+p+" slot "+i, hand[i]==null?CompactState.EMPTY:hand[i].id(), c.getCard(p, i));
+    }
+    for(Colour colour: s.getConfig().getColours())
+      assertEquals(where+": firework "+colour, s.getFirework(colour).size(), c.getFirework(colour.ordinal()));
+    assertEquals(where+": hint tokens", s.getHintTokens(), c.getHintTokens());
+    assertEquals(where+": fuse tokens", s.getFuseTokens(), c.getFuseTokens());
+    assertEquals(where+": deck size", s.getDeckSize(), c.getDeckSize());
+    assertEquals(where+": order", s.getOrder(), c.getOrder());
+    assertEquals(where+": next player", s.getNextPlayer(), c.getNextPlayer());
+    assertEquals(where+": final action", s.getFinalActionIndex(), c.getFinalActionIndex());
+    assertEquals(where+": score", s.getScore(), c.getScore());
+    assertEquals(where+": game over", s.gameOver(), c.gameOver());
+  }
+}
@@ -0,0 +1,77 @@
+package hanabAI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that games written by GameArchiveWriter replay to their recorded scores.
+ * Seeded games of basic agents are archived to a file, half with the deal stored as a seed and half as the cards,
+ * and are read back through the memory-mapped reader, for the standard and rainbow decks and for hands of 3 cards.
+ **/
+public class GameArchiveTest{
+
+  /**The number of games archived for each number of players and each variant**/
+  private static final int GAMES = 100;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void standardGames() throws Exception{roundTrip(GameConfig.STANDARD);}
+
+  @Test
+  public void rainbowGames() throws Exception{roundTrip(GameConfig.RAINBOW);}
+
+  @Test
+  public void smallHandGames() throws Exception{roundTrip(new GameConfig(5, 8, 3, 3));}
+
+  //archives games for 2 to 5 players, and replays every one of them
+  private void roundTrip(GameConfig config) throws IOException, IllegalActionException{
+    File file = folder.newFile();
+    final List<Integer> scores = new ArrayList<Integer>(), moves = new ArrayList<Integer>();
+    try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)){
+      GameArchiveWriter writer = new GameArchiveWriter(ch);
+      GameListener listener = GameListener.all(writer, new GameListener(){
+        public void gameEnded(State s, int score){
+          scores.add(score);
+          moves.add(s.getOrder());
+        }
+      });
+      for(int players = 2; players<=5; players++){
+        for(int game = 0; game<GAMES; game++){
+          Agent[] agents = new Agent[players];
+          for(int i = 0; i<players; i++) agents[i] = new agents.BasicAgent();
+          long seed = 1000L*players+game;
+          if(game%2==0) writer.setSeed(seed);
+          Hanabi h = new Hanabi(config, agents, seed);
+          h.setListener(listener);
+          h.play();
+        }
+      }
+      writer.flush();
+    }
+    GameArchiveReader reader = new GameArchiveReader(file.toPath());
+    for(int i = 0; i<scores.size(); i++){
+      assertTrue("game "+i+" is missing", reader.next());
+      assertEquals("game "+i+": seeded", i%2==0, reader.isSeeded());
+      assertEquals("game "+i+": rules", config, reader.getConfig());
+      assertEquals("game "+i+": recorded score", (int)scores.get(i), reader.getScore());
+      State s = reader.replay();
+      assertEquals("game "+i+": moves replayed", (int)moves.get(i), s.getOrder());
+      assertEquals("game "+i+": replayed score", (int)scores.get(i), s.getScore());
+    }
+    assertFalse("more games than were written", reader.next());
+  }
+}
@@ -0,0 +1,80 @@
+package hanabAI;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks the Zobrist key that State updates as moves are made against the key of a state built from scratch in the same position:
+ * at every state of seeded games of basic agents, the state and each player's view of it
+ * must have the same key as, and be equal to, the state rebuilt through CompactState,
+ * and each player's view must also have the key summed up from the Zobrist numbers of its features.
+ **/
+public class StateHashTest{
+
+  /**The number of games played for each number of players and each deck**/
+  private static final int GAMES = 100;
+
+  @Test
+  public void standardGames(){playGames(GameConfig.STANDARD);}
+
+  @Test
+  public void rainbowGames(){playGames(GameConfig.RAINBOW);}
+
+  @Test
+  public void smallVariantGames(){playGames(new GameConfig(4, 3, 2, 3));}
+
+  //plays seeded games for 2 to 5 players, checking every state
+  private static void playGames(GameConfig config){
+    for(int players = 2; players<=5; players++){
+      for(int game = 0; game<GAMES; game++){
+        Agent[] agents = new Agent[players];
+        for(int i = 0; i<players; i++) agents[i] = new agents.BasicAgent();
+        final long seed = 1000L*players+game;
+        Hanabi h = new Hanabi(config, agents, seed);
+        h.setListener(new GameListener(){
+          public void gameStarted(State s){check(s, seed);}
+          public void moveMade(Action a, State s){check(s, seed);}
+        });
+        h.play();
+      }
+    }
+  }
+
+  private static void check(State s, long seed){
+    State rebuilt = CompactState.fromState(s).toState();
+    String where = "game "+seed+", state "+s.getOrder();
+    compare(s, rebuilt, where);
+    if(s.gameOver()) return;
+    try{
+      for(int p = 0; p<s.getPlayers().length; p++){
+        State local = s.hideHand(p);
+        compare(local, rebuilt.hideHand(p), where+", player "+p);
+        assertEquals(where+", player "+p+": key from scratch", scratch(local), local.getZobristKey());
+      }
+    }
+    catch(IllegalActionException e){throw new AssertionError(e);}
+  }
+
+  //the key of a state that is not over, from its features
+  private static long scratch(State s){
+    int turns = s.getFinalActionIndex()==-1?-1:s.getFinalActionIndex()-s.getOrder();
+    long key = Zobrist.hints(s.getHintTokens())^Zobrist.fuse(s.getFuseTokens())^Zobrist.next(s.getNextPlayer())
+      ^Zobrist.observer(s.getObserver())^Zobrist.left(turns);
+    for(int p = 0; p<s.getPlayers().length; p++){
+      Card[] hand = s.getHand(p);
+      for(int i = 0; i<hand.length; i++)
+        key^=p!=s.getObserver()?Zobrist.hand(p, i, hand[i]):s.hasCard(p, i)?Zobrist.hidden(p, i):0;
+    }
+    for(Colour c: Colour.values()) key^=Zobrist.firework(c.ordinal(), s.getFirework(c).size());
+    long discards = 0;
+    for(Card c: s.getDiscards()) discards+=Zobrist.discard(c);
+    return key^discards;
+  }
+
+  private static void compare(State s, State rebuilt, String where){
+    assertEquals(where+": key", rebuilt.getZobristKey(), s.getZobristKey());
+    assertEquals(where+": equals", rebuilt, s);
+    assertEquals(where+": hash code", rebuilt.hashCode(), s.hashCode());
+  }
+}
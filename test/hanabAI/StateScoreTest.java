@@ -0,0 +1,82 @@
+package hanabAI;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Stack;
+
+import org.junit.Test;
+
+/**
+ * Checks the score, completed fireworks and game over flag that State keeps as moves are made
+ * against a scan of the fireworks, as State computed them before they were tracked,
+ * at every state of seeded games of basic agents, for each number of players, with the standard and rainbow decks and a single suit.
+ **/
+public class StateScoreTest{
+
+  /**The number of games played for each number of players and each deck**/
+  private static final int GAMES = 200;
+
+  @Test
+  public void standardGames(){playGames(GameConfig.STANDARD);}
+
+  @Test
+  public void rainbowGames(){playGames(GameConfig.RAINBOW);}
+
+  /**A single suit, where basic agents sometimes finish every firework, so games also end on the top score**/
+  @Test
+  public void singleSuitGames(){playGames(new GameConfig(1, 8, 3, 2));}
+
+  //plays seeded games for each number of players the deck can deal to, checking every state
+  private static void playGames(GameConfig config){
+    for(int players = 2; players<=5; players++){
+      if(config.getHandSize(players)*players>=config.getDeckSize()) continue;
+      for(int game = 0; game<GAMES; game++){
+        Agent[] agents = new Agent[players];
+        for(int i = 0; i<players; i++) agents[i] = new agents.BasicAgent();
+        final long seed = 1000L*players+game;
+        Hanabi h = new Hanabi(config, agents, seed);
+        h.setListener(new GameListener(){
+          public void gameStarted(State s){check(s, seed);}
+          public void moveMade(Action a, State s){check(s, seed);}
+          public void gameEnded(State s, int score){
+            check(s, seed);
+            assertEquals("final score of game "+seed, scan(s), score);
+          }
+        });
+        h.play();
+      }
+    }
+  }
+
+  //compares the tracked values of a state, and of each player's view of it, with a scan
+  private static void check(State s, long seed){
+    compare(s, seed);
+    if(s.getObserver()==-1 && !s.gameOver()){
+      try{
+        for(int p = 0; p<s.getPlayers().length; p++) compare(s.hideHand(p), seed);
+      }
+      catch(IllegalActionException e){throw new AssertionError(e);}
+    }
+  }
+
+  private static void compare(State s, long seed){
+    String where = "game "+seed+", state "+s.getOrder();
+    assertEquals(where+": score", scan(s), s.getScore());
+    int completed = 0;
+    for(Colour c: s.getConfig().getColours()) if(s.getFirework(c).size()==5) completed++;
+    assertEquals(where+": completed fireworks", completed, s.getCompletedFireworks());
+    boolean over = s.getOrder()==s.getFinalActionIndex() || s.getFuseTokens()==0 || scan(s)==s.getConfig().getMaxScore();
+    assertEquals(where+": game over", over, s.gameOver());
+  }
+
+  //the score as the sum of the heights of the fireworks, or 0 once the fuse has burnt out
+  private static int scan(State s){
+    if(s.getFuseTokens()==0) return 0;
+    int score = 0;
+    for(Colour c: s.getConfig().getColours()){
+      Stack<Card> fw = s.getFirework(c);
+      if(!fw.isEmpty()) score+=fw.peek().getValue();
+    }
+    return score;
+  }
+}